@@ -0,0 +1,571 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is a red-black tree that stores its nodes in parallel arrays
+ * instead of in RBTNode objects. A node is an index (slot) into the arrays:
+ * left, right and parent hold the slots of its relatives (NIL for none),
+ * values holds its value and the bit of its slot in red holds its color.
+ * Each node then takes up about 16 bytes instead of the 40 bytes of an
+ * RBTNode, and inserting a value does not allocate a node. Slots of removed
+ * nodes are kept in a free list and reused by later inserts. When the arrays
+ * grow, or when compact is called, the nodes are moved into slots in sorted
+ * order, so that iterating reads the arrays sequentially instead of jumping
+ * between slots in the order the values were inserted.
+ *
+ * Insertion and removal follow the same cases as RedBlackTree, with equal
+ * values going into the left subtree, and iterators walk from each node to
+ * its in-order successor like the SuccessorIterator of IterableRedBlackTree.
+ */
+public class ArrayRedBlackTree<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    // slot that stands for a missing node
+    private static final int NIL = -1;
+
+    private int[] left;
+    private int[] right;
+    private int[] parent;
+    private T[] values;
+    private final BitSet red = new BitSet();
+
+    private int root = NIL;
+    private int size = 0;
+    // number of slots that were ever used, all slots after it are unused
+    private int used = 0;
+    // first slot of the free list, which is linked through the parent array
+    private int free = NIL;
+
+    // private max and min iterator variables
+    private Comparable<T> iteratorMin = null;
+    private Comparable<T> iteratorMax = null;
+
+    /**
+     * Creates an empty tree with room for 16 nodes before its arrays grow.
+     */
+    public ArrayRedBlackTree() {
+        this(16);
+    }
+
+    /**
+     * Creates an empty tree.
+     *
+     * @param capacity the number of nodes the arrays have room for before they grow
+     * @throws IllegalArgumentException if capacity is negative
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayRedBlackTree(int capacity) throws IllegalArgumentException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative: " + capacity);
+        }
+        left = new int[capacity];
+        right = new int[capacity];
+        parent = new int[capacity];
+        values = (T[]) new Comparable<?>[capacity];
+    }
+
+    // Helper method to take a slot from the free list or the end of the arrays
+    private int allocate(T data) {
+        int slot;
+        if (free != NIL) {
+            slot = free;
+            free = parent[slot];
+        } else {
+            if (used == values.length) {
+                relayout(Math.max(16, values.length * 2));
+            }
+            slot = used++;
+        }
+        left[slot] = NIL;
+        right[slot] = NIL;
+        parent[slot] = NIL;
+        values[slot] = data;
+        red.set(slot);
+        return slot;
+    }
+
+    /**
+     * Moves the nodes into slots in sorted order, with no free slots between
+     * them, so that iterators read the arrays from front to back. The arrays
+     * are also laid out this way each time they grow, but values inserted
+     * after that take slots in the order they were inserted in; call this
+     * method after many inserts or removes that are followed by many scans.
+     */
+    public void compact() {
+        relayout(values.length);
+    }
+
+    // Helper method to copy the nodes into new arrays of the given capacity,
+    // giving them slots in sorted order
+    @SuppressWarnings("unchecked")
+    private void relayout(int capacity) {
+        int[] slotOf = new int[used];
+        int count = 0;
+        for (int node = lowest(null); node != NIL; node = successor(node)) {
+            slotOf[node] = count++;
+        }
+
+        int[] newLeft = new int[capacity];
+        int[] newRight = new int[capacity];
+        int[] newParent = new int[capacity];
+        T[] newValues = (T[]) new Comparable<?>[capacity];
+        BitSet newRed = new BitSet(capacity);
+        for (int node = lowest(null); node != NIL; node = successor(node)) {
+            int slot = slotOf[node];
+            newLeft[slot] = left[node] == NIL ? NIL : slotOf[left[node]];
+            newRight[slot] = right[node] == NIL ? NIL : slotOf[right[node]];
+            newParent[slot] = parent[node] == NIL ? NIL : slotOf[parent[node]];
+            newValues[slot] = values[node];
+            newRed.set(slot, red.get(node));
+        }
+
+        left = newLeft;
+        right = newRight;
+        parent = newParent;
+        values = newValues;
+        red.clear();
+        red.or(newRed);
+        root = root == NIL ? NIL : slotOf[root];
+        used = count;
+        free = NIL;
+    }
+
+    // Helper method to put the slot of a removed node on the free list
+    private void release(int slot) {
+        values[slot] = null;
+        red.clear(slot);
+        parent[slot] = free;
+        free = slot;
+    }
+
+    // Helper method to check the color of a slot, where NIL counts as black
+    private boolean isRed(int node) {
+        return node != NIL && red.get(node);
+    }
+
+    /**
+     * Performs the rotation of child above parent that BSTRotation.rotate
+     * performs on nodes: a right rotation when child is the left child of
+     * parent, and a left rotation when it is the right child.
+     *
+     * @param child  slot of the node to move up
+     * @param parent slot of the node to move down, the parent of child
+     */
+    private void rotate(int child, int parent) {
+        int grandParent = this.parent[parent];
+        if (left[parent] == child) {
+            int middle = right[child];
+            left[parent] = middle;
+            if (middle != NIL) {
+                this.parent[middle] = parent;
+            }
+            right[child] = parent;
+        } else {
+            int middle = left[child];
+            right[parent] = middle;
+            if (middle != NIL) {
+                this.parent[middle] = parent;
+            }
+            left[child] = parent;
+        }
+        this.parent[parent] = child;
+        this.parent[child] = grandParent;
+
+        if (grandParent == NIL) {
+            root = child;
+        } else if (left[grandParent] == parent) {
+            left[grandParent] = child;
+        } else {
+            right[grandParent] = child;
+        }
+    }
+
+    /**
+     * Repairs red property violations caused by a new red node, with the
+     * same recoloring and rotation cases as RedBlackTree.ensureRedProperty.
+     *
+     * @param newRedNode slot of a newly inserted red node, or a node turned
+     *                   red by previous repair
+     */
+    private void ensureRedProperty(int newRedNode) {
+        while (parent[newRedNode] != NIL && isRed(parent[newRedNode])) {
+            int parentNode = parent[newRedNode];
+            int grandParent = parent[parentNode];
+            int aunt = left[grandParent] == parentNode ? right[grandParent] : left[grandParent];
+
+            if (isRed(aunt)) {
+                // Recoloring, then continue with the grandparent
+                red.clear(parentNode);
+                red.clear(aunt);
+                red.set(grandParent);
+                newRedNode = grandParent;
+                continue;
+            }
+
+            if (left[grandParent] == parentNode) {
+                if (right[parentNode] == newRedNode) {
+                    // Case 2: Left rotation at parent
+                    rotate(newRedNode, parentNode);
+                    parentNode = newRedNode;
+                }
+                // Case 3: Right rotation at grandParent
+                rotate(parentNode, grandParent);
+            } else {
+                if (left[parentNode] == newRedNode) {
+                    // Case 4: Right rotation at parent
+                    rotate(newRedNode, parentNode);
+                    parentNode = newRedNode;
+                }
+                // Case 5: Left rotation at grandParent
+                rotate(parentNode, grandParent);
+            }
+            red.clear(parentNode);
+            red.set(grandParent);
+            break;
+        }
+        red.clear(root);
+    }
+
+    /**
+     * Inserts a new value into the tree, into the left subtree of any value
+     * equal to it.
+     *
+     * @param data the new value being inserted
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Null data argument");
+        }
+
+        int newNode = allocate(data);
+        size++;
+        if (root == NIL) {
+            root = newNode;
+            red.clear(newNode);
+            return;
+        }
+
+        int curr = root;
+        while (true) {
+            if (data.compareTo(values[curr]) <= 0) {
+                if (left[curr] == NIL) {
+                    left[curr] = newNode;
+                    break;
+                }
+                curr = left[curr];
+            } else {
+                if (right[curr] == NIL) {
+                    right[curr] = newNode;
+                    break;
+                }
+                curr = right[curr];
+            }
+        }
+        parent[newNode] = curr;
+        ensureRedProperty(newNode);
+    }
+
+    // Helper method to find the slot of the smallest value that is at least
+    // min (any value when min is null), or NIL when there is none
+    private int lowest(Comparable<T> min) {
+        int lowest = NIL;
+        int curr = root;
+        while (curr != NIL) {
+            if (min == null || min.compareTo(values[curr]) <= 0) {
+                lowest = curr;
+                curr = left[curr];
+            } else {
+                curr = right[curr];
+            }
+        }
+        return lowest;
+    }
+
+    // Helper method to find the slot of the in-order successor of a node
+    private int successor(int node) {
+        if (right[node] != NIL) {
+            node = right[node];
+            while (left[node] != NIL) {
+                node = left[node];
+            }
+            return node;
+        }
+        int up = parent[node];
+        while (up != NIL && right[up] == node) {
+            node = up;
+            up = parent[node];
+        }
+        return up;
+    }
+
+    @Override
+    public boolean contains(Comparable<T> data) {
+        int curr = root;
+        while (curr != NIL) {
+            int comparison = data.compareTo(values[curr]);
+            if (comparison == 0) {
+                return true;
+            }
+            curr = comparison < 0 ? left[curr] : right[curr];
+        }
+        return false;
+    }
+
+    /**
+     * Removes one occurrence of a value from the tree.
+     *
+     * @param data the value to remove
+     * @return true if a value equal to data was found and removed, and false
+     *         if the tree does not contain data
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public boolean remove(Comparable<T> data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Null data argument");
+        }
+
+        int curr = root;
+        while (curr != NIL) {
+            int comparison = data.compareTo(values[curr]);
+            if (comparison == 0) {
+                removeNode(curr);
+                return true;
+            }
+            curr = comparison < 0 ? left[curr] : right[curr];
+        }
+        return false;
+    }
+
+    /**
+     * Removes every value from min to max (inclusive) from the tree. Each value
+     * is removed with the same O(log n) operation as remove.
+     *
+     * @param min the smallest value to remove, or null for no minimum
+     * @param max the largest value to remove, or null for no maximum
+     * @return the number of values that were removed
+     */
+    @Override
+    public int removeRange(Comparable<T> min, Comparable<T> max) {
+        int removed = 0;
+        for (int lowest = lowest(min); lowest != NIL
+                && (max == null || max.compareTo(values[lowest]) >= 0); lowest = lowest(min)) {
+            removeNode(lowest);
+            removed++;
+        }
+        return removed;
+    }
+
+    /**
+     * Removes a node from the tree like RedBlackTree.removeNode: a node with
+     * two children takes the value of its in-order successor, and the
+     * successor's slot is unlinked instead and put on the free list.
+     *
+     * @param node slot of the node to remove
+     */
+    private void removeNode(int node) {
+        if (left[node] != NIL && right[node] != NIL) {
+            int successor = right[node];
+            while (left[successor] != NIL) {
+                successor = left[successor];
+            }
+            values[node] = values[successor];
+            node = successor;
+        }
+
+        int child = left[node] != NIL ? left[node] : right[node];
+        int parentNode = parent[node];
+
+        // replace the node with its only child (or with nothing)
+        if (child != NIL) {
+            parent[child] = parentNode;
+        }
+        if (parentNode == NIL) {
+            root = child;
+        } else if (left[parentNode] == node) {
+            left[parentNode] = child;
+        } else {
+            right[parentNode] = child;
+        }
+
+        if (!red.get(node)) {
+            if (isRed(child)) {
+                red.clear(child);
+            } else {
+                ensureBlackProperty(child, parentNode);
+            }
+        }
+        release(node);
+        size--;
+    }
+
+    /**
+     * Repairs the black height violation left behind when a black node is
+     * removed, with the same cases as RedBlackTree.ensureBlackProperty.
+     *
+     * @param doubleBlack slot of the node that replaced the removed node, or NIL
+     * @param parentNode  slot of the parent of doubleBlack
+     */
+    private void ensureBlackProperty(int doubleBlack, int parentNode) {
+        while (doubleBlack != root && !isRed(doubleBlack)) {
+            boolean isLeft = left[parentNode] == doubleBlack;
+            int sibling = isLeft ? right[parentNode] : left[parentNode];
+
+            if (isRed(sibling)) {
+                // Case 1: red sibling, rotate it above the parent so the sibling is black
+                red.clear(sibling);
+                red.set(parentNode);
+                rotate(sibling, parentNode);
+                sibling = isLeft ? right[parentNode] : left[parentNode];
+            }
+
+            int near = isLeft ? left[sibling] : right[sibling];
+            int far = isLeft ? right[sibling] : left[sibling];
+
+            if (!isRed(near) && !isRed(far)) {
+                // Case 2: black sibling with black children, push the violation up
+                red.set(sibling);
+                doubleBlack = parentNode;
+                parentNode = parent[doubleBlack];
+            } else {
+                if (!isRed(far)) {
+                    // Case 3: only the near child is red, rotate it into the sibling position
+                    red.clear(near);
+                    red.set(sibling);
+                    rotate(near, sibling);
+                    far = sibling;
+                    sibling = near;
+                }
+                // Case 4: red far child, rotate the sibling above the parent
+                red.set(sibling, red.get(parentNode));
+                red.clear(parentNode);
+                red.clear(far);
+                rotate(sibling, parentNode);
+                doubleBlack = root;
+            }
+        }
+
+        if (doubleBlack != NIL) {
+            red.clear(doubleBlack);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values from the tree. The arrays keep their capacity.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(values, 0, used, null);
+        red.clear();
+        root = NIL;
+        size = 0;
+        used = 0;
+        free = NIL;
+    }
+
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.iteratorMin = min;
+    }
+
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.iteratorMax = max;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(iteratorMin, iteratorMax);
+    }
+
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max) {
+        return new Iterator<T>() {
+            // slot of the value that next will return, or NIL when done
+            private int nextNode = checkMax(lowest(min));
+
+            // Helper method to end the iteration at values beyond the stop point
+            private int checkMax(int node) {
+                return node != NIL && max != null && max.compareTo(values[node]) < 0 ? NIL : node;
+            }
+
+            public boolean hasNext() {
+                return nextNode != NIL;
+            }
+
+            public T next() {
+                if (nextNode == NIL) {
+                    throw new NoSuchElementException("No more values in range");
+                }
+                T value = values[nextNode];
+                nextNode = checkMax(successor(nextNode));
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Checks for tests that the root is black, that parent links match child
+     * links, that no red node has a red child, and that every path has the
+     * same number of black nodes.
+     *
+     * @return the number of black nodes on every path, or -1 if the tree is
+     *         not valid
+     */
+    int blackHeight() {
+        return isRed(root) ? -1 : blackHeight(root);
+    }
+
+    /**
+     * @return the number of slots that were ever used, for tests
+     */
+    int usedSlots() {
+        return used;
+    }
+
+    /**
+     * @return true if the nodes are in the first size slots in sorted order,
+     *         as compact leaves them, for tests
+     */
+    boolean slotsInOrder() {
+        int expected = 0;
+        for (int node = lowest(null); node != NIL; node = successor(node)) {
+            if (node != expected++) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Recursive helper method for blackHeight that checks the subtree below
+    // node, returning its number of black nodes on every path or -1
+    private int blackHeight(int node) {
+        if (node == NIL) {
+            return 1;
+        }
+        for (int child : new int[] { left[node], right[node] }) {
+            if (child != NIL && (parent[child] != node || (isRed(node) && isRed(child)))) {
+                return -1;
+            }
+        }
+        int leftHeight = blackHeight(left[node]);
+        int rightHeight = blackHeight(right[node]);
+        if (leftHeight == -1 || leftHeight != rightHeight) {
+            return -1;
+        }
+        return leftHeight + (isRed(node) ? 0 : 1);
+    }
+}
@@ -18,6 +18,8 @@ public class BSTNode<T> {
     protected BSTNode<T> left = null;
     // reference to the node's right child
     protected BSTNode<T> right = null;
+    // number of nodes in the subtree rooted at this node, including itself
+    protected int subtreeSize = 1;
 
     /**
      * Constructor that creates a new node with the value data. Both parent
@@ -60,6 +62,23 @@ public class BSTNode<T> {
         return this.up;
     }
 
+    /**
+     * @return the number of nodes in the subtree rooted at this node,
+     *         including this node
+     */
+    public int getSubtreeSize() {
+        return this.subtreeSize;
+    }
+
+    /**
+     * Recomputes the subtree size of this node from the subtree sizes of its
+     * children. This must be called whenever the children of this node change.
+     */
+    public void updateSubtreeSize() {
+        this.subtreeSize = 1 + (this.left == null ? 0 : this.left.subtreeSize)
+                + (this.right == null ? 0 : this.right.subtreeSize);
+    }
+
     /**
      * Gives this node a new value and deletes the old value.
      * 
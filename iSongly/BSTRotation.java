@@ -40,10 +40,14 @@ public class BSTRotation<T extends Comparable<T>> extends BinarySearchTree<T> {
     /**
      * Performs the rotation operation on the provided nodes within this tree.
      * When the provided child is a left child of the provided parent, this
-     * method will perform a right rotation.
+     * method will perform a right rotation. The parent references and subtree
+     * sizes of the affected nodes are updated.
      */
     protected void rightRotationHelper(BSTNode<T> child, BSTNode<T> parent) {
         parent.setLeft(child.getRight());
+        if (child.getRight() != null) {
+            child.getRight().setUp(parent);
+        }
 
         // set child node's right child as the parent node
         child.setRight(parent);
@@ -51,6 +55,7 @@ public class BSTRotation<T extends Comparable<T>> extends BinarySearchTree<T> {
         // update grandparent link
         if (parent == root) {
             root = child;
+            child.setUp(null);
         } else {
             if (parent.getUp().getLeft() == parent) {
                 parent.getUp().setLeft(child);
@@ -62,15 +67,23 @@ public class BSTRotation<T extends Comparable<T>> extends BinarySearchTree<T> {
 
         // update parent
         parent.setUp(child);
+
+        // the parent is now below the child, so its size is recomputed first
+        parent.updateSubtreeSize();
+        child.updateSubtreeSize();
     }
 
     /**
      * Performs the rotation operation on the provided nodes within this tree.
      * When the provided child is a right child of the provided parent, this method
-     * will perform a left rotation.
+     * will perform a left rotation. The parent references and subtree sizes of
+     * the affected nodes are updated.
      */
     protected void leftRotationHelper(BSTNode<T> child, BSTNode<T> parent) {
         parent.setRight(child.getLeft());
+        if (child.getLeft() != null) {
+            child.getLeft().setUp(parent);
+        }
 
         // set child node's left child as the parent node
         child.setLeft(parent);
@@ -78,6 +91,7 @@ public class BSTRotation<T extends Comparable<T>> extends BinarySearchTree<T> {
         // update grandparent link
         if (parent == root) {
             root = child;
+            child.setUp(null);
         } else {
             if (parent.getUp().getLeft() == parent) {
                 parent.getUp().setLeft(child);
@@ -89,6 +103,10 @@ public class BSTRotation<T extends Comparable<T>> extends BinarySearchTree<T> {
 
         // update parent
         parent.setUp(child);
+
+        // the parent is now below the child, so its size is recomputed first
+        parent.updateSubtreeSize();
+        child.updateSubtreeSize();
     }
 
     /**
@@ -125,6 +143,7 @@ public class BSTRotation<T extends Comparable<T>> extends BinarySearchTree<T> {
             left.setUp(node);
         if (right != null)
             right.setUp(node);
+        node.updateSubtreeSize();
         return node;
     }
 
@@ -0,0 +1,379 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is an in-memory sorted collection that stores its values in a
+ * B+tree with up to 64 values per node. Each node keeps its values in an
+ * array, so a lookup binary searches a few contiguous arrays instead of
+ * following one reference per level of a binary tree, and a tree of a million
+ * values is only four levels deep.
+ *
+ * Values are stored in the leaves, and each leaf links to the next one, so
+ * iterators walk along the leaves with the same bounds as the RBTIterator of
+ * IterableRedBlackTree. Internal nodes hold separator values; every value left
+ * of a separator is at most the separator and every value right of it is at
+ * least the separator. Equal values are kept in insertion order. Full nodes
+ * are split in half, but nodes are not merged when values are removed, so a
+ * leaf can be left empty until the tree is cleared or becomes empty.
+ */
+public class BTree<T extends Comparable<T>> implements IterableSortedCollection<T> {
+
+    public static final int DEFAULT_MAX_VALUES = 64;
+
+    /**
+     * A node of the tree. Leaves have no children array, and internal nodes
+     * have one more child than values.
+     */
+    private static class Node<T> {
+        private final T[] values;
+        private final Node<T>[] children;
+        private int count = 0;
+        // the next leaf, only used for leaves
+        private Node<T> next = null;
+
+        // arrays have room for one extra value, which is split off right away
+        @SuppressWarnings("unchecked")
+        Node(int maxValues, boolean leaf) {
+            values = (T[]) new Comparable<?>[maxValues + 1];
+            children = leaf ? null : (Node<T>[]) new Node<?>[maxValues + 2];
+        }
+
+        boolean isLeaf() {
+            return children == null;
+        }
+    }
+
+    private final int maxValues;
+    private Node<T> root;
+    private int size = 0;
+    // separator of the last split, returned alongside the new right node
+    private T promoted = null;
+
+    // private max and min iterator variables
+    private Comparable<T> iteratorMin = null;
+    private Comparable<T> iteratorMax = null;
+
+    /**
+     * Creates an empty tree with up to DEFAULT_MAX_VALUES values per node.
+     */
+    public BTree() {
+        this(DEFAULT_MAX_VALUES);
+    }
+
+    /**
+     * Creates an empty tree.
+     *
+     * @param maxValues the number of values a node holds before it is split
+     * @throws IllegalArgumentException if maxValues is less than 3
+     */
+    public BTree(int maxValues) throws IllegalArgumentException {
+        if (maxValues < 3) {
+            throw new IllegalArgumentException("nodes must hold at least 3 values: " + maxValues);
+        }
+        this.maxValues = maxValues;
+        this.root = new Node<>(maxValues, true);
+    }
+
+    /**
+     * Inserts a new value into the tree, after any values equal to it.
+     *
+     * @param data the new value being inserted
+     * @throws NullPointerException if data argument is null
+     */
+    @Override
+    public void insert(T data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Null data argument");
+        }
+
+        Node<T> right = insert(root, data);
+        if (right != null) {
+            Node<T> newRoot = new Node<>(maxValues, false);
+            newRoot.values[0] = promoted;
+            newRoot.children[0] = root;
+            newRoot.children[1] = right;
+            newRoot.count = 1;
+            root = newRoot;
+        }
+        promoted = null;
+        size++;
+    }
+
+    // Recursive helper method to insert a value into the subtree of node,
+    // returning the new right sibling of node when it was split, or null
+    private Node<T> insert(Node<T> node, T data) {
+        int index = upperBound(node, data);
+        if (node.isLeaf()) {
+            System.arraycopy(node.values, index, node.values, index + 1, node.count - index);
+            node.values[index] = data;
+            node.count++;
+        } else {
+            Node<T> right = insert(node.children[index], data);
+            if (right == null) {
+                return null;
+            }
+            System.arraycopy(node.values, index, node.values, index + 1, node.count - index);
+            System.arraycopy(node.children, index + 1, node.children, index + 2, node.count - index);
+            node.values[index] = promoted;
+            node.children[index + 1] = right;
+            node.count++;
+        }
+        return node.count > maxValues ? split(node) : null;
+    }
+
+    // Helper method to move the upper half of a full node into a new right
+    // sibling, leaving the separator between them in promoted
+    private Node<T> split(Node<T> node) {
+        Node<T> right = new Node<>(maxValues, node.isLeaf());
+        int half = node.count / 2;
+        if (node.isLeaf()) {
+            // leaves keep every value, and the first value of right separates them
+            right.count = node.count - half;
+            System.arraycopy(node.values, half, right.values, 0, right.count);
+            right.next = node.next;
+            node.next = right;
+            promoted = right.values[0];
+        } else {
+            // the middle value moves up, and the values around it go left and right
+            right.count = node.count - half - 1;
+            System.arraycopy(node.values, half + 1, right.values, 0, right.count);
+            System.arraycopy(node.children, half + 1, right.children, 0, right.count + 1);
+            Arrays.fill(node.children, half + 1, node.count + 1, null);
+            promoted = node.values[half];
+        }
+        Arrays.fill(node.values, half, node.count, null);
+        node.count = half;
+        return right;
+    }
+
+    // Helper method to count the values of a node that are at most key,
+    // which is the index of the child to descend into when inserting key
+    private static <T> int upperBound(Node<T> node, Comparable<T> key) {
+        int low = 0;
+        int high = node.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key.compareTo(node.values[middle]) >= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Helper method to count the values of a node that are less than key,
+    // which is the index of the child that holds the first value that is at
+    // least key
+    private static <T> int lowerBound(Node<T> node, Comparable<T> key) {
+        int low = 0;
+        int high = node.count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key.compareTo(node.values[middle]) > 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A position in the chain of leaves: a leaf and the index of a value
+     * within it.
+     */
+    private static class Cursor<T> {
+        private Node<T> leaf;
+        private int index;
+
+        /**
+         * Places the cursor at the first value that is at least min.
+         */
+        Cursor(Node<T> root, Comparable<T> min) {
+            leaf = root;
+            while (!leaf.isLeaf()) {
+                leaf = leaf.children[min == null ? 0 : lowerBound(leaf, min)];
+            }
+            index = min == null ? 0 : lowerBound(leaf, min);
+            skipExhausted();
+        }
+
+        // Helper method to move past the end of leaves that have no more values
+        private void skipExhausted() {
+            while (index >= leaf.count && leaf.next != null) {
+                leaf = leaf.next;
+                index = 0;
+            }
+        }
+
+        /**
+         * @return the value at the cursor, or null past the last value
+         */
+        T value() {
+            return index < leaf.count ? leaf.values[index] : null;
+        }
+
+        void advance() {
+            index++;
+            skipExhausted();
+        }
+    }
+
+    @Override
+    public boolean contains(Comparable<T> data) {
+        T value = new Cursor<>(root, data).value();
+        return value != null && data.compareTo(value) == 0;
+    }
+
+    /**
+     * Removes one occurrence of a value from the tree.
+     *
+     * @param data the value to remove
+     * @return true if a value equal to data was found and removed, and false
+     *         if the tree does not contain data
+     * @throws NullPointerException if data is null
+     */
+    @Override
+    public boolean remove(Comparable<T> data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Null data argument");
+        }
+        Cursor<T> cursor = new Cursor<>(root, data);
+        T value = cursor.value();
+        if (value == null || data.compareTo(value) != 0) {
+            return false;
+        }
+        removeFromLeaf(cursor.leaf, cursor.index, cursor.index + 1);
+        return true;
+    }
+
+    /**
+     * Removes every value from min to max (inclusive) from the tree, shifting
+     * the values of each leaf once.
+     *
+     * @param min the smallest value to remove, or null for no minimum
+     * @param max the largest value to remove, or null for no maximum
+     * @return the number of values that were removed
+     */
+    @Override
+    public int removeRange(Comparable<T> min, Comparable<T> max) {
+        int removed = 0;
+        Cursor<T> cursor = new Cursor<>(root, min);
+        Node<T> leaf = cursor.leaf;
+        int from = cursor.index;
+        while (leaf != null) {
+            int to = max == null ? leaf.count : upperBound(leaf, max);
+            to = Math.max(from, to);
+            removed += to - from;
+            boolean done = to < leaf.count;
+            removeFromLeaf(leaf, from, to);
+            if (done || size == 0) {
+                break;
+            }
+            leaf = leaf.next;
+            from = 0;
+        }
+        return removed;
+    }
+
+    // Helper method to remove the values at [from, to) of a leaf, and start
+    // over with an empty root when the tree becomes empty
+    private void removeFromLeaf(Node<T> leaf, int from, int to) {
+        System.arraycopy(leaf.values, to, leaf.values, from, leaf.count - to);
+        Arrays.fill(leaf.values, leaf.count - (to - from), leaf.count, null);
+        leaf.count -= to - from;
+        size -= to - from;
+        if (size == 0) {
+            clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        root = new Node<>(maxValues, true);
+        size = 0;
+    }
+
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.iteratorMin = min;
+    }
+
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.iteratorMax = max;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(iteratorMin, iteratorMax);
+    }
+
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max) {
+        Cursor<T> cursor = new Cursor<>(root, min);
+        return new Iterator<T>() {
+            public boolean hasNext() {
+                T value = cursor.value();
+                return value != null && (max == null || max.compareTo(value) >= 0);
+            }
+
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more values in range");
+                }
+                T value = cursor.value();
+                cursor.advance();
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Checks for tests that the values of every node are sorted and within
+     * the bounds given by its ancestors, and that all leaves are at the same
+     * depth.
+     *
+     * @return the height of the tree, or -1 if it is not valid
+     */
+    int height() {
+        return height(root, null, null);
+    }
+
+    // Recursive helper method for height that checks the subtree of node,
+    // returning its height or -1
+    private static <T extends Comparable<T>> int height(Node<T> node, T low, T high) {
+        for (int i = 0; i < node.count; i++) {
+            T value = node.values[i];
+            if ((low != null && value.compareTo(low) < 0) || (high != null && value.compareTo(high) > 0)
+                    || (i > 0 && value.compareTo(node.values[i - 1]) < 0)) {
+                return -1;
+            }
+        }
+        if (node.isLeaf()) {
+            return 1;
+        }
+        int height = -1;
+        for (int i = 0; i <= node.count; i++) {
+            int childHeight = height(node.children[i], i == 0 ? low : node.values[i - 1],
+                    i == node.count ? high : node.values[i]);
+            if (childHeight == -1 || (height != -1 && childHeight != height)) {
+                return -1;
+            }
+            height = childHeight;
+        }
+        return height + 1;
+    }
+}
@@ -1,24 +1,109 @@
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.PriorityQueue;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class Backend implements BackendInterface {
 
     private IterableSortedCollection<Song> tree;
 
+    // false when the tree keeps its songs off the heap, in which case none of
+    // the structures below are filled and queries scan the tree instead
+    private final boolean indexed;
+
+    // secondary indexes over the songs in the tree, ordered by year, loudness
+    // and descending danceability
+    private SongIndex yearIndex = new SongIndex(Song::getYear);
+    private SongIndex loudnessIndex = new SongIndex(Song::getLoudness);
+    private SongIndex danceabilityIndex = new SongIndex(song -> -song.getDanceability());
+    private List<SongIndex> indexes = Arrays.asList(yearIndex, loudnessIndex, danceabilityIndex);
+
+    // bitmaps of song IDs for each value of each attribute, kept current
+    // together with the indexes above
+    private Map<SongAttribute, BitmapIndex> bitmapIndexes = new EnumMap<>(SongAttribute.class);
+
+    // the distinct artists and genres of the loaded songs, which the songs
+    // and the song table share
+    private StringDictionary artists = new StringDictionary();
+    private StringDictionary genres = new StringDictionary();
+
+    // the songs stored column by column, which gives each song its row as an
+    // int ID and maps IDs back to songs
+    private SongTable table = new SongTable(artists, genres);
+
+    // names of the columns that are used to build a Song
+    private static final String[] SONG_COLUMNS = { "title", "artist", "top genre", "year", "bpm",
+            "nrgy", "dnce", "dB", "live" };
+
+    // number of query results that are cached by default
+    private static final int DEFAULT_CACHE_SIZE = 64;
+
+    // results of recent getRange, setFilter and fiveMost queries
+    private QueryCache cache;
+
     /**
      * Backend class handles the loading, filtering, and sorting of songs.
      * Songs are stored in a tree-like structure for efficient sorting and filtering.
      */
     public Backend(IterableSortedCollection<Song> tree) {
+        this(tree, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Creates a backend that caches the results of up to cacheSize recent
+     * queries, evicting the least recently used result when the cache is full.
+     * The indexes are built here from the songs already in the tree, and are
+     * kept current as songs are loaded and removed through this backend, so
+     * queries only read them. If the tree is changed directly, rebuildIndexes
+     * has to be called before the next query.
+     *
+     * When the tree is a MappedSongCatalog or a DiskBPlusTree, which keep their
+     * songs in a file instead of on the heap, no indexes are built, as they
+     * would copy every song onto the heap. getRange, setFilter, fiveMost,
+     * streamRange and streamFilter then scan the tree and only keep the songs
+     * that match, and are not cached. A catalog only creates the songs that
+     * match, while a B+tree decodes the pages it scans through its buffer
+     * pool. The methods that work with song IDs, pages, bitmaps, queries or
+     * the song table throw an UnsupportedOperationException.
+     * @param tree stores the loaded songs
+     * @param cacheSize is the number of query results to cache, or 0 to
+     *     disable caching
+     * @throws IllegalArgumentException when cacheSize is negative
+     */
+    public Backend(IterableSortedCollection<Song> tree, int cacheSize) {
         this.tree = tree;
+        this.indexed = !(tree instanceof MappedSongCatalog || tree instanceof DiskBPlusTree);
+        this.cache = new QueryCache(cacheSize);
+
+        for (SongAttribute attribute : SongAttribute.values()) {
+            bitmapIndexes.put(attribute, new BitmapIndex(attribute));
+        }
+        rebuildIndexes();
+    }
+
+    /**
+     * @return the cache of query results, e.g. to read its hit and miss counts
+     */
+    public QueryCache getQueryCache() {
+        return cache;
     }
 
 
@@ -39,11 +124,17 @@ public class Backend implements BackendInterface {
             String headerLine = reader.readLine();
 
             Map<String, Integer> headerMap = createHeaderMap(headerLine);
+            boolean[] needed = neededColumns(headerMap);
 
+            // songs are only buffered when an empty tree can be built from
+            // all of them at once, otherwise each one is inserted as it is
+            // read, as are the songs of a tree that is kept off the heap
+            List<Song> songs = indexed && tree.isEmpty() ? new ArrayList<>() : null;
+            boolean allKept = true;
             String line;
             while ((line = reader.readLine()) != null) {
 
-                String[] data = parseLine(line);
+                String[] data = parseLine(line, needed);
 
                 String title = data[headerMap.get("title")];
                 String artist = data[headerMap.get("artist")];
@@ -59,10 +150,22 @@ public class Backend implements BackendInterface {
                 Song song = new Song(title, artist, genres, year, bpm, energy,
                         danceability, loudness, liveness);
 
-                // Add the song to the tree
-                tree.insert(song);
+                if (songs != null) {
+                    songs.add(song);
+                } else {
+                    allKept &= insert(song);
+                }
 
             }
+
+            // Add the songs to the tree
+            if (songs != null) {
+                insertAll(songs);
+            } else if (!allKept) {
+                rebuildIndexes();
+            } else {
+                cache.invalidate();
+            }
         } catch (IOException e) {
         // Added a custom message when the IOException is thrown
         throw new IOException("Error reading file: " + filename + ". Please check if the file exists and is accessible.", e);
@@ -70,6 +173,277 @@ public class Backend implements BackendInterface {
 
     }
 
+    /**
+     * Loads data from the .csv file referenced by filename in the same way as
+     * readData, but memory-maps the file and parses the songs directly from its
+     * bytes. This avoids creating a String for every line and field, which
+     * makes a large difference for files with millions of songs. A tree that
+     * keeps its songs off the heap gets each song as soon as it is parsed.
+     * @param filename is the name of the csv file to load data from
+     * @throws IOException when there is trouble finding/reading file
+     */
+    public void readDataMapped(String filename) throws IOException {
+        try (MappedSongReader reader = new MappedSongReader(filename)) {
+
+            Map<String, Integer> headerMap = createHeaderMap(reader.readHeaderLine());
+
+            if (!indexed) {
+                reader.forEachSong(headerMap, this::insert);
+                cache.invalidate();
+                return;
+            }
+
+            List<Song> songs = new ArrayList<>();
+            reader.forEachSong(headerMap, songs::add);
+
+            // Add the songs to the tree
+            insertAll(songs);
+
+        } catch (IOException e) {
+        throw new IOException("Error reading file: " + filename + ". Please check if the file exists and is accessible.", e);
+        }
+    }
+
+    /**
+     * Loads data from the .csv file referenced by filename in the same way as
+     * readDataMapped, but cuts the file into chunks that end on record
+     * boundaries and parses them in parallel on the common ForkJoinPool. The
+     * parsed songs are inserted into the tree once all chunks are done, except
+     * for a tree that keeps its songs off the heap, which gets the songs of
+     * each chunk as soon as it and the chunks before it are done.
+     * @param filename is the name of the csv file to load data from
+     * @throws IOException when there is trouble finding/reading file
+     */
+    public void readDataParallel(String filename) throws IOException {
+        readDataParallel(filename, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads data from the .csv file referenced by filename, parsing chunks of
+     * the file in parallel on the provided pool.
+     * @param filename is the name of the csv file to load data from
+     * @param pool runs the tasks that parse the file
+     * @throws IOException when there is trouble finding/reading file
+     */
+    public void readDataParallel(String filename, ForkJoinPool pool) throws IOException {
+        List<Song> songs;
+        try (MappedSongReader reader = new MappedSongReader(filename)) {
+
+            Map<String, Integer> headerMap = createHeaderMap(reader.readHeaderLine());
+
+            if (!indexed) {
+                reader.forEachSongParallel(headerMap, pool, this::insert);
+                cache.invalidate();
+                return;
+            }
+
+            songs = reader.parseParallel(headerMap, pool);
+
+        } catch (IOException e) {
+        throw new IOException("Error reading file: " + filename + ". Please check if the file exists and is accessible.", e);
+        }
+
+        // Merge the parsed songs into the tree
+        insertAll(songs);
+    }
+
+    /**
+     * Saves the songs in the tree to a binary snapshot file that loadSnapshot
+     * can read much faster than readData can parse a csv file. The songs are
+     * written in the sorted order of the tree, with each distinct title,
+     * artist and genre written once. The tree is walked twice, and the songs
+     * are written as they are walked instead of being collected first.
+     * @param path is the file to write, which is replaced if it exists
+     * @throws IOException when there is trouble writing the file
+     */
+    public void saveSnapshot(Path path) throws IOException {
+        SongSnapshot.write(path, action -> tree.forEachInRange(null, null, action));
+    }
+
+    /**
+     * Loads the songs of a snapshot file written by saveSnapshot, and inserts
+     * them into the tree in the same way as readData. The songs are already
+     * sorted, so an empty tree is built from them in O(n) time. A tree that
+     * keeps its songs off the heap gets each song as soon as it is read.
+     * @param path is the snapshot file to load
+     * @throws IOException when there is trouble reading the file, or it is
+     *     not a snapshot of a supported version
+     */
+    public void loadSnapshot(Path path) throws IOException {
+        if (!indexed) {
+            SongSnapshot.forEachSong(path, this::insert);
+            cache.invalidate();
+            return;
+        }
+
+        List<Song> songs = SongSnapshot.read(path);
+
+        // Add the songs to the tree
+        insertAll(songs);
+    }
+
+    // Helper method to add loaded songs to the tree, building an empty tree
+    // from all of them at once instead of inserting them one at a time. When
+    // the tree grows by every song, only those songs are indexed; a tree that
+    // drops or replaces songs is indexed again from scratch.
+    private void insertAll(List<Song> songs) {
+        int sizeBefore = tree.size();
+        if (indexed) {
+            for (Song song : songs) {
+                addToTable(song);
+            }
+        }
+
+        if (tree.isEmpty()) {
+            tree.bulkLoad(songs);
+        } else {
+            for (Song song : songs) {
+                tree.insert(song);
+            }
+        }
+
+        if (tree.size() - sizeBefore == songs.size()) {
+            indexSongs(songs);
+            cache.invalidate();
+        } else {
+            rebuildIndexes();
+        }
+    }
+
+    // Helper method to add one loaded song to a tree that is not empty, and to
+    // index it if the tree kept it. Returns false when the tree did not grow,
+    // in which case the caller has to rebuild the indexes.
+    private boolean insert(Song song) {
+        int sizeBefore = tree.size();
+        if (indexed) {
+            addToTable(song);
+        }
+        tree.insert(song);
+
+        if (tree.size() != sizeBefore + 1) {
+            return false;
+        }
+        if (indexed) {
+            int id = table.rowOf(song);
+            for (SongIndex index : indexes) {
+                index.insert(song, id);
+            }
+            for (BitmapIndex bitmapIndex : bitmapIndexes.values()) {
+                bitmapIndex.add(song, id);
+            }
+        }
+        return true;
+    }
+
+    // Helper method to give a song an ID in this backend. The ID is kept by
+    // the table rather than by the song, so a song that is also in the tree of
+    // another backend, or that is loaded twice, keeps the ID it already has.
+    private void addToTable(Song song) {
+        if (!table.contains(song)) {
+            song.shareStrings(artists, genres);  // share one String per artist and genre
+            table.add(song);
+        }
+    }
+
+    // Helper method to add songs that are in the table and were kept by the
+    // tree to the indexes and bitmaps. The index trees are only bulk loaded
+    // when they would at least double, since bulk loading merges with every
+    // song already in them; fewer songs are inserted one at a time.
+    private void indexSongs(List<Song> songs) {
+        if (!indexed) {
+            return;
+        }
+        for (SongIndex index : indexes) {
+            if (songs.size() >= index.size()) {
+                index.bulkLoad(songs, table::rowOf);
+            } else {
+                for (Song song : songs) {
+                    index.insert(song, table.rowOf(song));
+                }
+            }
+        }
+        for (BitmapIndex bitmapIndex : bitmapIndexes.values()) {
+            for (Song song : songs) {
+                bitmapIndex.add(song, table.rowOf(song));
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the indexes, bitmaps and song table from the songs in the tree,
+     * and clears the query cache. The constructor builds them this way, and
+     * loads only add the songs that the tree kept; this has to be called after
+     * the tree is changed without going through this backend. Songs that are
+     * still in the tree keep their IDs. Over a tree without indexes, this only
+     * clears the cache.
+     */
+    public void rebuildIndexes() {
+        if (!indexed) {
+            cache.invalidate();
+            return;
+        }
+
+        List<Song> songs = new ArrayList<>(tree.size());
+        BitSet inTree = new BitSet();
+        tree.forEachInRange(null, null, song -> {
+            addToTable(song);  // songs that were not loaded through this backend
+            inTree.set(table.rowOf(song));
+            songs.add(song);
+        });
+
+        // songs that the tree did not keep, or that were removed from it directly
+        for (int id = inTree.nextClearBit(0); id < table.rowLimit(); id = inTree.nextClearBit(id + 1)) {
+            table.remove(id);
+        }
+
+        for (SongIndex index : indexes) {
+            index.clear();
+            index.bulkLoad(songs, table::rowOf);
+        }
+        for (BitmapIndex bitmapIndex : bitmapIndexes.values()) {
+            bitmapIndex.clear();
+            for (Song song : songs) {
+                bitmapIndex.add(song, table.rowOf(song));
+            }
+        }
+
+        cache.invalidate();
+    }
+
+    /**
+     * Removes every song with the provided title from the tree, so that songs
+     * can be taken out of the catalog without clearing and reloading it.
+     * @param title is the title of the songs to remove
+     * @return the number of songs that were removed
+     */
+    public int removeSong(String title) {
+        Song probe = new Song(title, null, null, 0, 0, 0, 0, 0, 0);
+
+        if (!indexed) {
+            int count = tree.removeRange(probe, probe);
+            cache.invalidate();
+            return count;
+        }
+
+        List<Song> removed = new ArrayList<>();
+        tree.forEachInRange(probe, probe, removed::add);
+        int count = tree.removeRange(probe, probe);
+
+        for (Song song : removed) {
+            int id = table.rowOf(song);
+            for (SongIndex index : indexes) {
+                index.remove(song, id);
+            }
+            for (BitmapIndex bitmapIndex : bitmapIndexes.values()) {
+                bitmapIndex.remove(song, id);
+            }
+            table.remove(id);
+        }
+
+        cache.invalidate();
+        return count;
+    }
+
     // Helper method to create a Map from the header line
     private Map<String, Integer> createHeaderMap(String headerLine) {
         String[] headers = headerLine.split(",");
@@ -80,33 +454,63 @@ public class Backend implements BackendInterface {
         return headerMap;
     }
 
-    // Helper method to parse a CSV line into an array of fields
-    private String[] parseLine(String line) {
-        List<String> result = new ArrayList<>();
+    // Helper method to mark the columns that are used to build a Song. The
+    // array ends with the last of these columns, so that parseLine can stop there.
+    private boolean[] neededColumns(Map<String, Integer> headerMap) throws IOException {
+        int last = 0;
+        for (String name : SONG_COLUMNS) {
+            Integer index = headerMap.get(name);
+            if (index == null) {
+                throw new IOException("Missing column: " + name);
+            }
+            last = Math.max(last, index);
+        }
+
+        boolean[] needed = new boolean[last + 1];
+        for (String name : SONG_COLUMNS) {
+            needed[headerMap.get(name)] = true;
+        }
+        return needed;
+    }
+
+    // Helper method to parse the needed fields of a CSV line into an array,
+    // leaving null for the fields that are not needed. Those fields are skipped
+    // without building Strings, and the rest of the line after the last needed
+    // field is not scanned at all.
+    private String[] parseLine(String line, boolean[] needed) {
+        String[] result = new String[needed.length];
         StringBuilder currentField = new StringBuilder();
         boolean insideQuotes = false;
+        int column = 0;
 
-        for (int i = 0; i < line.length(); i++) {
+        for (int i = 0; i < line.length() && column < needed.length; i++) {
             char currentChar = line.charAt(i);
 
             if (currentChar == '"') {
                 if (insideQuotes && i + 1 < line.length() && line.charAt(i + 1) == '"') {
-                    currentField.append('"');
+                    if (needed[column]) {
+                        currentField.append('"');
+                    }
                     i++;
                 } else {
                     insideQuotes = !insideQuotes;
                 }
             } else if (currentChar == ',' && !insideQuotes) {
-                result.add(currentField.toString());
-                currentField.setLength(0);
-            } else {
+                if (needed[column]) {
+                    result[column] = currentField.toString();
+                    currentField.setLength(0);
+                }
+                column++;
+            } else if (needed[column]) {
                 currentField.append(currentChar);
             }
         }
 
-        result.add(currentField.toString());
+        if (column < needed.length && needed[column]) {
+            result[column] = currentField.toString();
+        }
 
-        return result.toArray(new String[0]);
+        return result;
     }
 
 
@@ -136,10 +540,28 @@ public class Backend implements BackendInterface {
      */
     @Override
     public List<String> getRange(Integer low, Integer high) {
-        List<String> setFilter = setFilterHelper(loudThreshold); // Filter by loudness
-        List<String> getRange = getRangeHelper(low, high); // Filter by year range
+        if (!indexed) {
+            List<String> getRange = titles(scanFiltered(low, high, loudThreshold));
 
-        getRange.retainAll(setFilter);  // Combine filters
+            yearLow = low;
+            yearHigh = high;
+
+            return getRange;
+        }
+        return titles(getRangeIds(low, high));
+    }
+
+    /**
+     * Works like getRange, but returns the IDs of the songs instead of their
+     * titles, for callers that do not need Strings. Songs can be looked up by
+     * ID with getSong.
+     * @param low is the minimum Year of songs in the returned array
+     * @param high is the maximum Year of songs in the returned array
+     * @return IDs of the matching songs, ordered by Year
+     */
+    public int[] getRangeIds(Integer low, Integer high) {
+        requireIndexes();
+        int[] getRange = cachedFilterIds(low, high, loudThreshold);  // Filter by year and loudness
 
         yearLow = low;
         yearHigh = high;
@@ -147,49 +569,315 @@ public class Backend implements BackendInterface {
         return getRange;
     }
 
-    // Helper method to retrieve songs within the specified year range
-    private List<String> getRangeHelper(Integer low, Integer high) {
-        Comparator<Song> yearComparator = Comparator.comparingInt(Song::getYear);
+    /**
+     * Works like getRange, but returns a lazy stream of the matching songs in
+     * Year order instead of a list of titles. Songs are read from the year
+     * index only as the stream is consumed, so a caller that takes the first
+     * page with skip and limit only pays for the songs up to the end of that
+     * page. The tree must not be changed while the stream is in use. Over a
+     * tree without indexes the stream is not lazy: the tree is scanned and
+     * the matching songs are sorted by Year when this method is called, since
+     * the tree is in title order.
+     * @param low is the minimum Year of songs in the stream
+     * @param high is the maximum Year of songs in the stream
+     * @return a sequential stream of the matching songs, ordered by Year
+     */
+    public Stream<Song> streamRange(Integer low, Integer high) {
+        Stream<Song> streamRange = streamFiltered(low, high, loudThreshold);
+
+        yearLow = low;
+        yearHigh = high;
+
+        return streamRange;
+    }
+
+    /**
+     * Works like setFilter, but returns a lazy stream of the matching songs in
+     * Year order instead of a list of titles, in the same way as streamRange
+     * (which also explains when the stream is not lazy).
+     * @param threshold filters the stream to only include songs that have a
+     *     Loudness that is smaller than this threshold.
+     * @return a sequential stream of the matching songs, ordered by Year
+     */
+    public Stream<Song> streamFilter(Integer threshold) {
+        Stream<Song> streamFilter = streamFiltered(yearLow, yearHigh, threshold);
+
+        loudThreshold = threshold;
+
+        return streamFilter;
+    }
+
+    // Helper method to stream the songs that are within the year range and
+    // pass the loudness threshold, in year order, straight from the year index.
+    // A tree without indexes has to be scanned and sorted up front instead.
+    private Stream<Song> streamFiltered(Integer low, Integer high, Integer threshold) {
+        if (!indexed) {
+            return scanFiltered(low, high, threshold).stream();
+        }
+
+        return lazyStream(yearIndex.iterator(low, high))
+                .filter(song -> threshold == null || song.getLoudness() <= threshold);
+    }
+
+    /**
+     * Works like getRange, but returns only the first pageSize matching songs,
+     * along with a token that nextPage turns into the page after them. Songs
+     * are read from the year index only up to the end of the page.
+     * @param low is the minimum Year of songs in the pages
+     * @param high is the maximum Year of songs in the pages
+     * @param pageSize is the maximum number of songs on each page
+     * @return the first page of matching songs, ordered by Year
+     * @throws IllegalArgumentException when pageSize is not positive
+     */
+    public SongPage getRangePage(Integer low, Integer high, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        requireIndexes();
+
+        SongPage getRangePage = page(yearIndex.iterator(low, high), low, high, loudThreshold, pageSize);
+
+        yearLow = low;
+        yearHigh = high;
 
-        // Set the minimum and maximum bounds for the iterator
-        for (Song song : tree) {
-            song = new Song(song.getTitle(), song.getArtist(), song.getGenres(), song.getYear(),
-                    song.getBPM(), song.getEnergy(), song.getDanceability(), song.getLoudness(),
-                    song.getLiveness(), yearComparator);
+        return getRangePage;
+    }
+
+    /**
+     * Returns the page of songs that follows the page that token was returned
+     * with, using the Year range and Loudness filter that were in effect for
+     * the first page. The token records the position of the last song on its
+     * page, so finding the next page takes one O(log n) seek into the year
+     * index plus the songs on the page, however deep the page is. Songs that
+     * were loaded or removed in the meantime are included or left out based
+     * on their position.
+     * @param token is the token of the previous page
+     * @param pageSize is the maximum number of songs on the page
+     * @return the next page of matching songs, ordered by Year
+     * @throws IllegalArgumentException when pageSize is not positive or token
+     *     was not returned by this class
+     */
+    public SongPage nextPage(String token, int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
         }
+        PageToken position = PageToken.decode(token);
+        requireIndexes();
+
+        // the year range only needs to be checked at its upper end, because
+        // the page starts after a song within the range
+        Iterator<Song> songs = yearIndex.iteratorAfter(position.lastPosition(), position.getLastId(),
+                position.getYearHigh());
+        return page(songs, position.getYearLow(), position.getYearHigh(), position.getLoudThreshold(), pageSize);
+    }
+
+    // Helper method to take up to pageSize songs that pass the loudness
+    // threshold from songs, and create the token for the page after them when
+    // songs has more that pass it
+    private SongPage page(Iterator<Song> songs, Integer low, Integer high, Integer threshold, int pageSize) {
+        IntStream.Builder page = IntStream.builder();
+        int count = 0;
+        Song last = null;
+        Song next = null;
+        while (next == null && songs.hasNext()) {
+            Song song = songs.next();
+            if (threshold != null && song.getLoudness() > threshold) {
+                continue;
+            }
+            if (count < pageSize) {
+                page.add(table.rowOf(song));
+                count++;
+                last = song;
+            } else {
+                next = song;
+            }
+        }
+
+        int[] ids = page.build().toArray();
+        String nextToken = next == null ? null : new PageToken(low, high, threshold, last, table.rowOf(last)).encode();
+        return new SongPage(ids, titles(ids), nextToken);
+    }
+
+    // Helper method to wrap an iterator in a sequential stream that only takes
+    // songs from it as they are consumed
+    private static Stream<Song> lazyStream(Iterator<Song> songs) {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(songs, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * Looks up a song by the ID it was given when it was loaded.
+     * @param id is the ID of the song
+     * @return the song with that ID, or null if there is no such song
+     */
+    public Song getSong(int id) {
+        return table.getSong(id);
+    }
+
+    /**
+     * Looks up the ID that this backend gave a song. A song that is in the
+     * trees of several backends has a separate ID in each of them.
+     * @param song is the song to look up
+     * @return the ID of the song, or -1 if this backend has not indexed it
+     */
+    public int getId(Song song) {
+        return table.rowOf(song);
+    }
+
+    /**
+     * Retrieves the IDs of all songs whose attribute is within a range, as a
+     * bitmap. Bitmaps for different attributes can be combined with and/or to
+     * evaluate any number of predicates without touching the songs, e.g.
+     * matching(ENERGY, 80, null).and(matching(BPM, 120, 130)).
+     * @param attribute is the attribute to filter on
+     * @param low is the minimum value of the attribute, or null for no minimum
+     * @param high is the maximum value of the attribute, or null for no maximum
+     * @return a new bitmap of the IDs of the matching songs
+     */
+    public SongBitmap matching(SongAttribute attribute, Integer low, Integer high) {
+        requireIndexes();
+
+        return bitmapIndexes.get(attribute).range(low, high);
+    }
 
+    // Helper method to look up the result of filterIds in the cache, running
+    // it only when it is not cached. getRange and setFilter share results.
+    private int[] cachedFilterIds(Integer low, Integer high, Integer threshold) {
+        return cache.get(QueryCache.QueryKind.FILTER, low, high, threshold,
+                () -> filterIds(low, high, threshold));
+    }
 
-        if (low == null) {
-            tree.setIteratorMin(null);
+    // Helper method to retrieve the IDs of the songs that are within the year
+    // range and pass the loudness threshold, in year order
+    private int[] filterIds(Integer low, Integer high, Integer threshold) {
+        IntStream.Builder ids = IntStream.builder();
+
+        boolean loudnessFirst = scanLoudnessFirst(low, high, threshold);
+
+        if (loudnessFirst) {
+            List<Song> songs = new ArrayList<>();
+            forEachFiltered(low, high, threshold, true, songs::add);
+            // only the matching songs need to be put in year order
+            songs.sort(Comparator.comparingInt(Song::getYear).thenComparing(Comparator.naturalOrder())
+                    .thenComparingInt(table::rowOf));
+            for (Song song : songs) {
+                ids.add(table.rowOf(song));
+            }
         } else {
-            tree.setIteratorMin(new Song(null, null, null, low,
-                    0, 0, 0, 0, 0, yearComparator));
+            forEachFiltered(low, high, threshold, false, song -> ids.add(table.rowOf(song)));
         }
 
-        if (high == null) {
-            tree.setIteratorMax(null);
+        return ids.build().toArray();
+    }
+
+    // Helper method to decide whether the loudness index has fewer songs in
+    // its range than the year index, and should be the one that is scanned
+    private boolean scanLoudnessFirst(Integer low, Integer high, Integer threshold) {
+        return threshold != null
+                && loudnessIndex.countInRange(null, threshold) < yearIndex.countInRange(low, high);
+    }
+
+    // Helper method to pass every song that is within the year range and passes
+    // the loudness threshold to action. Both conditions are checked in a single
+    // bounded scan of the loudness index when loudnessFirst is true, and of the
+    // year index otherwise, so the songs are only in year order in that case.
+    private void forEachFiltered(Integer low, Integer high, Integer threshold, boolean loudnessFirst,
+            Consumer<Song> action) {
+        if (loudnessFirst) {
+            loudnessIndex.forEachInRange(null, threshold, song -> {
+                if ((low == null || song.getYear() >= low) && (high == null || song.getYear() <= high)) {
+                    action.accept(song);
+                }
+            });
         } else {
-            tree.setIteratorMax(new Song(null, null, null, high,
-                    0, 0, 0, 0, 0, yearComparator));
+            yearIndex.forEachInRange(low, high, song -> {
+                if (threshold == null || song.getLoudness() <= threshold) {
+                    action.accept(song);
+                }
+            });
         }
+    }
 
-        // Retrieve and sort the songs
-        List<Song> getRangeSongs = new ArrayList<>();
+    // Helper method to convert an array of song IDs to a title list
+    private List<String> titles(int[] ids) {
+        List<String> titles = new ArrayList<>(ids.length);
 
-        for (Song song : tree) {
-            getRangeSongs.add(song);
+        for (int id : ids) {
+            titles.add(table.getSong(id).getTitle());
         }
 
-        getRangeSongs.sort(Comparator.comparingInt(Song::getYear));
+        return titles;
+    }
+
+    // Helper method to convert a list of songs to a title list
+    private static List<String> titles(List<Song> songs) {
+        List<String> titles = new ArrayList<>(songs.size());
 
-        // Convert song list to title list
-        List<String> getRange = new ArrayList<>();
+        for (Song song : songs) {
+            titles.add(song.getTitle());
+        }
 
-        for (Song song : getRangeSongs) {
-            getRange.add(song.getTitle());
+        return titles;
+    }
+
+    // Helper method to throw when the methods that need the indexes are called
+    // on a backend over a tree without indexes
+    private void requireIndexes() {
+        if (!indexed) {
+            throw new UnsupportedOperationException(
+                    "songs of a " + tree.getClass().getSimpleName() + " are not indexed");
         }
+    }
 
-        return getRange;
+    // Helper method to pass every song of a tree without indexes that matches
+    // query to action, in the order of the tree. A catalog checks its records
+    // and only creates the songs that match, while other trees are iterated.
+    private void scan(Query query, Consumer<Song> action) {
+        if (tree instanceof MappedSongCatalog) {
+            ((MappedSongCatalog) tree).forEachMatching(query, action);
+        } else {
+            tree.forEachInRange(null, null, song -> {
+                if (query.matches(song)) {
+                    action.accept(song);
+                }
+            });
+        }
+    }
+
+    // Helper method to find the songs of a tree without indexes that are
+    // within the year range and pass the loudness threshold, in year order.
+    // Songs of the same year stay in the order of the tree.
+    private List<Song> scanFiltered(Integer low, Integer high, Integer threshold) {
+        Query query = new Query().where(SongAttribute.YEAR, low, high)
+                .where(SongAttribute.LOUDNESS, null, threshold);
+
+        List<Song> songs = new ArrayList<>();
+        scan(query, songs::add);
+        songs.sort(Comparator.comparingInt(Song::getYear));
+        return songs;
+    }
+
+    // Helper method to find the five most danceable songs of a tree without
+    // indexes within the current year range and loudness filter, keeping no
+    // more than five songs at a time
+    private List<Song> scanFiveMost() {
+        Query query = new Query().where(SongAttribute.YEAR, yearLow, yearHigh)
+                .where(SongAttribute.LOUDNESS, null, loudThreshold);
+        Comparator<Song> order = Comparator.comparingInt(Song::getDanceability).reversed()
+                .thenComparing(Comparator.naturalOrder());
+
+        // the head of the heap is the least danceable song that is kept
+        PriorityQueue<Song> heap = new PriorityQueue<>(6, order.reversed());
+        scan(query, song -> {
+            heap.add(song);
+            if (heap.size() > 5) {
+                heap.poll();
+            }
+        });
+
+        List<Song> fiveMost = new ArrayList<>(heap);
+        fiveMost.sort(order);
+        return fiveMost;
     }
 
 
@@ -213,91 +901,339 @@ public class Backend implements BackendInterface {
      */
     @Override
     public List<String> setFilter(Integer threshold) {
-        List<String> getRange = getRangeHelper(yearLow, yearHigh);  // Get songs in year range
-        List<String> setFilter = setFilterHelper(threshold);  // Get songs that match loudness filter
+        if (!indexed) {
+            List<String> setFilter = titles(scanFiltered(yearLow, yearHigh, threshold));
 
-        setFilter.retainAll(getRange);  // Combine filters
+            loudThreshold = threshold;
+
+            return setFilter;
+        }
+        return titles(setFilterIds(threshold));
+    }
+
+    /**
+     * Works like setFilter, but returns the IDs of the songs instead of their
+     * titles.
+     * @param threshold filters returned song IDs to only include songs that
+     *     have a Loudness that is smaller than this threshold.
+     * @return IDs of the matching songs, ordered by Year
+     */
+    public int[] setFilterIds(Integer threshold) {
+        requireIndexes();
+        int[] setFilter = cachedFilterIds(yearLow, yearHigh, threshold);  // Filter by year and loudness
 
         loudThreshold = threshold;  // Save loudness threshold
 
         return setFilter;
     }
 
-    // Helper method to filter songs by loudness
-    private List<String> setFilterHelper(Integer threshold) {
-        Comparator<Song> loudComparator = Comparator.comparingInt(Song::getLoudness);
+    /**
+     * This method returns a list of song titles representing the five
+     * most Danceable songs that both fall within any attribute range specified
+     * by the most recent call to getRange, and conform to any filter set by
+     * the most recent call to setFilter.  The order of the song titles in this
+     * returned list is up to you.
+
+     * If fewer than five such songs exist, return all of them.  And return an
+     * empty list when there are no such songs.
+     *
+     * @return List of five most Danceable song titles
+     */
+    public List<String> fiveMost() {
+        if (!indexed) {
+            return titles(scanFiveMost());
+        }
+        return titles(fiveMostIds());
+    }
+
+    /**
+     * Works like fiveMost, but returns the IDs of the songs instead of their
+     * titles.
+     * @return IDs of the five most Danceable songs
+     */
+    public int[] fiveMostIds() {
+        requireIndexes();
 
-        for (Song song : tree) {
-            song = new Song(song.getTitle(), song.getArtist(), song.getGenres(), song.getYear(),
-                    song.getBPM(), song.getEnergy(), song.getDanceability(), song.getLoudness(),
-                    song.getLiveness(), loudComparator);
+        return cache.get(QueryCache.QueryKind.FIVE_MOST, yearLow, yearHigh, loudThreshold,
+                this::findFiveMost);
+    }
+
+    // Helper method to find the five most danceable songs within the current
+    // year range and loudness filter
+    private int[] findFiveMost() {
+        // songs that would be scanned by topK
+        int candidates = yearIndex.countInRange(yearLow, yearHigh);
+        if (loudThreshold != null) {
+            candidates = Math.min(candidates, loudnessIndex.countInRange(null, loudThreshold));
         }
 
+        // When about candidates out of size songs match, walking the danceability
+        // index visits about 5 * size / candidates songs before finding five,
+        // so scanning the candidates is only cheaper when there are few of them.
+        if ((long) candidates * candidates < 5L * yearIndex.size()) {
+            return topK(Song::getDanceability, 5, true);
+        }
 
-        if (threshold == null) {
-            tree.setIteratorMax(null);  // No filter if threshold is null
-        } else {
-            tree.setIteratorMax(new Song(null, null, null, 0,
-                    0, 0, 0, threshold, 0, loudComparator));
+        IntStream.Builder fiveMost = IntStream.builder();
+        int found = 0;
+        Iterator<Song> mostDanceable = danceabilityIndex.iterator(null, null);
+        while (found < 5 && mostDanceable.hasNext()) {
+            Song song = mostDanceable.next();
+            if ((yearLow == null || song.getYear() >= yearLow) && (yearHigh == null || song.getYear() <= yearHigh)
+                    && (loudThreshold == null || song.getLoudness() <= loudThreshold)) {
+                fiveMost.add(table.rowOf(song));
+                found++;
+            }
         }
 
-        tree.setIteratorMin(null);  // Set min to null for loudness filtering
+        return fiveMost.build().toArray();
+    }
 
+    /**
+     * Finds the k songs with the highest (or lowest) value of an attribute
+     * among the songs that fall within the Year range of the most recent call
+     * to getRange and pass the filter of the most recent call to setFilter.
+     * The matching songs are streamed through a heap that never holds more
+     * than k songs, so this takes O(n log k) time and does not copy the
+     * matching songs. Songs with equal values are ordered by title, then ID.
+     * @param attribute reads the attribute to rank songs by, e.g. Song::getEnergy
+     * @param k is the maximum number of songs to return
+     * @param descending is true to find the songs with the highest values,
+     *     and false to find those with the lowest values
+     * @return IDs of up to k songs, from best to worst
+     * @throws IllegalArgumentException when k is negative
+     */
+    public int[] topK(ToIntFunction<Song> attribute, int k, boolean descending) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative: " + k);
+        }
+        requireIndexes();
+
+        // orders songs from best to worst
+        Comparator<Song> better = descending
+                ? Comparator.comparingInt(attribute).reversed()
+                : Comparator.comparingInt(attribute);
+        Comparator<Song> order = better.thenComparing(Comparator.naturalOrder()).thenComparingInt(table::rowOf);
 
-        List<Song> setFilterSongs = new ArrayList<>();
+        boolean loudnessFirst = scanLoudnessFirst(yearLow, yearHigh, loudThreshold);
+        return firstK(order, k,
+                action -> forEachFiltered(yearLow, yearHigh, loudThreshold, loudnessFirst, action));
+    }
 
-        for (Song song : tree) {
-            setFilterSongs.add(song);
+    // Helper method to find the first k of the songs that scan passes to its
+    // argument, in the provided order. When k is smaller than the number of
+    // songs, the songs are streamed through a heap that never holds more than
+    // k of them; otherwise they are all collected and sorted.
+    private int[] firstK(Comparator<Song> order, int k, Consumer<Consumer<Song>> scan) {
+        if (k == 0) {
+            return new int[0];
         }
 
-        setFilterSongs.sort(Comparator.comparingInt(Song::getYear));  // Sort by year
+        if (k >= table.size()) {
+            List<Song> songs = new ArrayList<>();
+            scan.accept(songs::add);
+            songs.sort(order);
+            return songs.stream().mapToInt(table::rowOf).toArray();
+        }
 
-        // Convert song list to title list
-        List<String> setFilter = new ArrayList<>();
+        // the head of the heap is the worst song that is currently kept
+        PriorityQueue<Song> heap = new PriorityQueue<>(k, order.reversed());
+        scan.accept(song -> {
+            if (heap.size() < k) {
+                heap.add(song);
+            } else if (order.compare(song, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(song);
+            }
+        });
 
-        for (Song song : setFilterSongs) {
-            setFilter.add(song.getTitle());
+        int[] firstK = new int[heap.size()];
+        for (int i = firstK.length - 1; i >= 0; i--) {
+            firstK[i] = table.rowOf(heap.poll());
         }
 
-        return setFilter;
+        return firstK;
     }
 
     /**
-     * This method returns a list of song titles representing the five
-     * most Danceable songs that both fall within any attribute range specified
-     * by the most recent call to getRange, and conform to any filter set by
-     * the most recent call to setFilter.  The order of the song titles in this
-     * returned list is up to you.
+     * Runs a query that can restrict any number of song attributes to ranges,
+     * and sort and limit the results. The number of songs that match each
+     * predicate is counted with the bitmap indexes, and the query is run in
+     * whichever of these ways is expected to visit fewer songs:
+     * - scan the songs that match the most selective predicate, check the
+     *   other predicates against each of them, and sort the matches
+     * - scan an index that is already in the order of the query (the year,
+     *   loudness or descending danceability index, or the tree itself when
+     *   sorting by title), bounded by the predicate on its attribute, and stop
+     *   once the limit is reached
+     * @param query is the query to run
+     * @return IDs of the matching songs, in the order of the query
+     */
+    public int[] query(Query query) {
+        requireIndexes();
 
-     * If fewer than five such songs exist, return all of them.  And return an
-     * empty list when there are no such songs.
-     *
-     * @return List of five most Danceable song titles
+        QueryPlan plan = plan(query);
+        if (!plan.ordered) {
+            return firstK(query.order(table::rowOf), query.getLimit(),
+                    action -> scanMatching(query, plan.scanned, action));
+        }
+
+        IntStream.Builder ids = IntStream.builder();
+        int found = 0;
+        Iterator<Song> songs = orderedScan(query, plan.scanned);
+        while (found < query.getLimit() && songs.hasNext()) {
+            Song song = songs.next();
+            if (query.matches(song)) {
+                ids.add(table.rowOf(song));
+                found++;
+            }
+        }
+        return ids.build().toArray();
+    }
+
+    /**
+     * Works like query, but returns a stream of the matching songs. When the
+     * query is answered by scanning an index in the order of the query, the
+     * stream is lazy and reads the index only as it is consumed, so skip and
+     * limit on the stream avoid finding songs that are not needed. Otherwise
+     * the matching songs have to be found and sorted before the first one can
+     * be returned. The tree must not be changed while the stream is in use.
+     * @param query is the query to run
+     * @return a sequential stream of the matching songs, in the order of the query
      */
-    public List<String> fiveMost() {
-        Set<String> filteredSongSet = new HashSet<>(setFilter(loudThreshold));  // Apply loudness filter
+    public Stream<Song> stream(Query query) {
+        requireIndexes();
 
-        List<Song> danceMost = new ArrayList<>();
+        QueryPlan plan = plan(query);
+        if (!plan.ordered) {
+            return IntStream.of(query(query)).mapToObj(table::getSong);
+        }
+        return lazyStream(orderedScan(query, plan.scanned)).filter(query::matches).limit(query.getLimit());
+    }
 
-        List<String> fiveMost = new ArrayList<>();
+    /**
+     * Describes how query would run, e.g. "ordered scan of YEAR index".
+     * @param query is the query to plan
+     * @return a description of the plan chosen for query
+     */
+    public String explain(Query query) {
+        requireIndexes();
 
-        for (Song song : tree) {
-            if (filteredSongSet.contains(song.getTitle())) {
-                danceMost.add(song);
-            }
+        return plan(query).toString();
+    }
+
+    /**
+     * How a query is run: which index is scanned, or null to scan every song,
+     * and whether that index is scanned in the order of the query.
+     */
+    private static class QueryPlan {
+        private final SongAttribute scanned;
+        private final boolean ordered;
+
+        QueryPlan(SongAttribute scanned, boolean ordered) {
+            this.scanned = scanned;
+            this.ordered = ordered;
         }
 
-        danceMost.sort(Comparator.comparingInt(Song::getDanceability).reversed());  // Sort by danceability
+        @Override
+        public String toString() {
+            if (scanned == null) {
+                return ordered ? "ordered scan of all songs" : "scan of all songs";
+            }
+            return (ordered ? "ordered scan of " : "scan of ") + scanned + " index";
+        }
+    }
 
-        int num = 0;
-        for (Song song : danceMost) {  // Return top 5 danceable songs
-            fiveMost.add(song.getTitle());
-            num++;
-            if (num >= 5) {
-                break;
+    // Helper method to choose the plan that is expected to visit the fewest
+    // songs, estimating from the exact number of songs that match each
+    // predicate and assuming that the predicates are independent
+    private QueryPlan plan(Query query) {
+        int size = yearIndex.size();
+
+        // the predicate that matches the fewest songs, and the expected number
+        // of songs that match all predicates
+        SongAttribute mostSelective = null;
+        long fewest = size;
+        double expected = size;
+        Map<SongAttribute, Integer> counts = new EnumMap<>(SongAttribute.class);
+        for (Map.Entry<SongAttribute, Query.Range> predicate : query.getPredicates().entrySet()) {
+            Query.Range range = predicate.getValue();
+            int count = bitmapIndexes.get(predicate.getKey()).countInRange(range.getLow(), range.getHigh());
+            counts.put(predicate.getKey(), count);
+            expected = size == 0 ? 0 : expected * count / size;
+            if (count < fewest || mostSelective == null) {
+                mostSelective = predicate.getKey();
+                fewest = count;
             }
         }
 
-        return fiveMost;
+        QueryPlan unordered = new QueryPlan(mostSelective, false);
+        if (query.getOrderBy() != null && orderedIndex(query.getOrderBy(), query.isDescending()) == null) {
+            return unordered;
+        }
+
+        // songs within the bounds of the ordered index, of which about
+        // limit * bounded / expected are visited before the limit is reached
+        SongAttribute orderBy = query.getOrderBy();
+        long bounded = (orderBy != null && counts.containsKey(orderBy)) ? counts.get(orderBy) : size;
+        double visited = bounded;
+        if (query.getLimit() < Integer.MAX_VALUE && expected > 0) {
+            visited = Math.min(bounded, (double) query.getLimit() * bounded / expected);
+        }
+        return visited <= fewest ? new QueryPlan(orderBy, true) : unordered;
+    }
+
+    // Helper method to find the index that is sorted by an attribute in the
+    // provided direction, with songs of equal value in title order
+    private SongIndex orderedIndex(SongAttribute attribute, boolean descending) {
+        if (attribute == SongAttribute.YEAR && !descending) {
+            return yearIndex;
+        } else if (attribute == SongAttribute.LOUDNESS && !descending) {
+            return loudnessIndex;
+        } else if (attribute == SongAttribute.DANCEABILITY && descending) {
+            return danceabilityIndex;
+        }
+        return null;
+    }
+
+    // Helper method to pass every song that matches query to action, checking
+    // the songs in the bitmap of the predicate on attribute, or every song when
+    // it is null. The predicates are checked against the columns of the song
+    // table, so only the matching songs are read.
+    private void scanMatching(Query query, SongAttribute attribute, Consumer<Song> action) {
+        if (attribute == null) {
+            table.forEachMatching(query, id -> action.accept(table.getSong(id)));
+        } else {
+            Query.Range range = query.getPredicates().get(attribute);
+            SongBitmap candidates = bitmapIndexes.get(attribute).range(range.getLow(), range.getHigh());
+            table.forEachMatching(query, candidates, id -> action.accept(table.getSong(id)));
+        }
+    }
+
+    /**
+     * @return the songs stored column by column, with each song in the row of
+     *     its ID, for scans that only need a few attributes
+     */
+    public SongTable getSongTable() {
+        requireIndexes();
+
+        return table;
+    }
+
+    // Helper method to iterate over the songs in the order of query, within
+    // the bounds of the predicate on the sorting attribute
+    private Iterator<Song> orderedScan(Query query, SongAttribute orderBy) {
+        if (orderBy == null) {
+            return tree.iterator(null, null);
+        }
+
+        Query.Range range = query.getPredicates().getOrDefault(orderBy, new Query.Range(null, null));
+        if (orderBy == SongAttribute.DANCEABILITY) {
+            // this index is keyed by negated danceability
+            Integer low = range.getHigh() == null ? null : -range.getHigh();
+            Integer high = range.getLow() == null ? null : -range.getLow();
+            return danceabilityIndex.iterator(low, high);
+        }
+        return orderedIndex(orderBy, false).iterator(range.getLow(), range.getHigh());
     }
-}
\ No newline at end of file
+}
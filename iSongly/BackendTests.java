@@ -2,7 +2,20 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Assertions;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
 
 public class BackendTests {
 
@@ -79,4 +92,1141 @@ public class BackendTests {
         List<String> fiveMost =  backend.fiveMost();
         Assertions.assertEquals("[BO$$, Cake By The Ocean, A L I E N S]", fiveMost.toString());
     }
-}
\ No newline at end of file
+
+
+    /**
+     * This test method checks that the memory-mapped loader reads the same songs
+     * as readData, including the last song of the file.
+     */
+    @Test
+    public void roleTest4() {
+        Tree_Placeholder tree = new Tree_Placeholder();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readDataMapped("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        Assertions.assertEquals(4, tree.size());
+        Assertions.assertTrue(tree.contains(new Song("Kills You Slowly", null, null,
+                0, 0, 0, 0, 0 ,0)));
+    }
+
+    /**
+     * This test method checks that the byte-level parser handles quoted fields,
+     * escaped quotes, CRLF line endings, blank lines and a final record without
+     * a newline the same way parseLine does.
+     */
+    @Test
+    public void roleTest5() {
+        Map<String, Integer> headerMap = new HashMap<>();
+        String[] headers = "title,artist,top genre,year,bpm,nrgy,dnce,dB,live,val".split(",");
+        for (int i = 0; i < headers.length; i++) {
+            headerMap.put(headers[i], i);
+        }
+
+        String csv = "\"Hey, Soul Sister\",Train,neo mellow,2010,97,89,67,-4,8,80\r\n"
+                + "\n"
+                + "Say \"\"Hi\"\",\"Beyonc\u00e9\",pop,2011,1,2,3,-10,5,6\n"
+                + "Last,Artist,genre,2019,+4,5,6,7,8,9";
+        ByteBuffer buffer = ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8));
+        List<Song> songs = new ArrayList<>();
+
+        try {
+            SongRecordParser parser = new SongRecordParser(headerMap);
+            int consumed = parser.parseRecords(buffer, 0, buffer.limit(), true, songs::add);
+            Assertions.assertEquals(buffer.limit(), consumed);
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while parsing records: " + e.getMessage());
+        }
+
+        Assertions.assertEquals(3, songs.size());
+        Assertions.assertEquals("Hey, Soul Sister", songs.get(0).getTitle());
+        Assertions.assertEquals(-4, songs.get(0).getLoudness());
+        Assertions.assertEquals("Say Hi", songs.get(1).getTitle());
+        Assertions.assertEquals("Beyonc\u00e9", songs.get(1).getArtist());
+        Assertions.assertEquals(-10, songs.get(1).getLoudness());
+        Assertions.assertEquals(4, songs.get(2).getBPM());
+        Assertions.assertEquals(8, songs.get(2).getLiveness());
+    }
+
+    /**
+     * This test method checks that parsing songs.csv in many small chunks on a
+     * ForkJoinPool returns the same songs in the same order as reading it
+     * sequentially, including the quoted title "Hey, Soul Sister".
+     */
+    @Test
+    public void roleTest6() {
+        List<Song> sequential = new ArrayList<>();
+        List<Song> parallel = null;
+        List<Song> handedOff = new ArrayList<>();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try (MappedSongReader reader = new MappedSongReader("songs.csv")) {
+            String header = reader.readHeaderLine();
+            Map<String, Integer> headerMap = new HashMap<>();
+            String[] headers = header.split(",");
+            for (int i = 0; i < headers.length; i++) {
+                headerMap.put(headers[i], i);
+            }
+
+            reader.forEachSong(headerMap, sequential::add);
+            parallel = reader.parseParallel(headerMap, pool, 512);
+            reader.forEachSongParallel(headerMap, pool, 512, handedOff::add);
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        } finally {
+            pool.shutdown();
+        }
+
+        Assertions.assertEquals(sequential.size(), parallel.size());
+        Assertions.assertEquals("Hey, Soul Sister", parallel.get(0).getTitle());
+        Assertions.assertEquals(sequential.size(), handedOff.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            Assertions.assertEquals(sequential.get(i).getTitle(), parallel.get(i).getTitle());
+            Assertions.assertEquals(sequential.get(i).getTitle(), handedOff.get(i).getTitle());
+        }
+
+        // the merged songs are inserted in file order, so the last one is kept
+        Tree_Placeholder tree = new Tree_Placeholder();
+        try {
+            new Backend(tree).readDataParallel("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+        Assertions.assertTrue(tree.contains(new Song("Kills You Slowly", null, null,
+                0, 0, 0, 0, 0 ,0)));
+    }
+
+    /**
+     * This test method checks that removeSong takes songs out of a working tree
+     * without reloading it.
+     */
+    @Test
+    public void roleTest7() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        int size = tree.size();
+        Song probe = new Song("Hey, Soul Sister", null, null, 0, 0, 0, 0, 0, 0);
+        Assertions.assertTrue(tree.contains(probe));
+
+        Assertions.assertEquals(1, backend.removeSong("Hey, Soul Sister"));
+        Assertions.assertEquals(0, backend.removeSong("Hey, Soul Sister"));
+        Assertions.assertEquals(size - 1, tree.size());
+        Assertions.assertFalse(tree.contains(probe));
+    }
+
+    /**
+     * This test method checks getRange and setFilter against a working tree:
+     * every song in the year range (and below the loudness threshold) must be
+     * returned, ordered by year.
+     */
+    @Test
+    public void roleTest8() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        // expected titles, from a full scan of the tree sorted by year
+        List<Song> expected = new ArrayList<>();
+        for (Song song : tree) {
+            if (song.getYear() >= 2012 && song.getYear() <= 2014) {
+                expected.add(song);
+            }
+        }
+        expected.sort(java.util.Comparator.comparingInt(Song::getYear));
+
+        List<String> expectedRange = new ArrayList<>();
+        List<String> expectedFilter = new ArrayList<>();
+        for (Song song : expected) {
+            expectedRange.add(song.getTitle());
+            if (song.getLoudness() <= -6) {
+                expectedFilter.add(song.getTitle());
+            }
+        }
+
+        List<String> getRange = backend.getRange(2012, 2014);
+        Assertions.assertEquals(expectedRange, getRange);
+        Assertions.assertTrue(getRange.contains("Locked Out of Heaven"));
+
+        List<String> setFilter = backend.setFilter(-6);
+        Assertions.assertEquals(expectedFilter, setFilter);
+
+        // a threshold that matches few songs is answered from the loudness index
+        expectedFilter.clear();
+        for (Song song : expected) {
+            if (song.getLoudness() <= -10) {
+                expectedFilter.add(song.getTitle());
+            }
+        }
+        Assertions.assertEquals(expectedFilter, backend.setFilter(-10));
+
+        // a song inserted into the tree directly is only found after the
+        // indexes are rebuilt, because queries do not check the tree
+        tree.insert(new Song("Direct Insert", "Artist", "pop", 2013, 100, 50, 50, -20, 10));
+        Assertions.assertFalse(backend.setFilter(-10).contains("Direct Insert"));
+        backend.rebuildIndexes();
+        Assertions.assertTrue(backend.setFilter(-10).contains("Direct Insert"));
+        Assertions.assertTrue(backend.getRange(2012, 2014).contains("Direct Insert"));
+
+        // loading into a tree that has songs only indexes the new songs
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+        backend.setFilter(null);
+        List<String> twice = backend.getRange(2012, 2014);
+        Assertions.assertEquals(2 * expectedRange.size() + 1, twice.size());
+        Assertions.assertEquals(twice.size(), backend.matching(SongAttribute.YEAR, 2012, 2014).cardinality());
+        Assertions.assertEquals(twice.get(0), twice.get(1));
+    }
+
+    /**
+     * This test method checks that loaded songs get dense IDs that map back to
+     * them, and that the ID variants of the queries match the title variants.
+     */
+    @Test
+    public void roleTest9() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        boolean[] seen = new boolean[tree.size()];
+        for (Song song : tree) {
+            int id = backend.getId(song);
+            Assertions.assertTrue(id >= 0 && id < seen.length);
+            Assertions.assertFalse(seen[id]);
+            seen[id] = true;
+            Assertions.assertTrue(backend.getSong(id) == song);
+        }
+
+        List<String> titles = backend.getRange(2015, 2016);
+        int[] ids = backend.getRangeIds(2015, 2016);
+        Assertions.assertEquals(titles.size(), ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            Assertions.assertEquals(titles.get(i), backend.getSong(ids[i]).getTitle());
+        }
+
+        backend.setFilter(-5);
+        int[] fiveMost = backend.fiveMostIds();
+        Assertions.assertEquals(5, fiveMost.length);
+        Assertions.assertEquals(backend.fiveMost().get(0), backend.getSong(fiveMost[0]).getTitle());
+    }
+
+    /**
+     * This test method checks topK against sorting all matching songs, for the
+     * highest and lowest values of an attribute.
+     */
+    @Test
+    public void roleTest10() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        backend.getRange(2011, 2017);
+        backend.setFilter(-4);
+
+        List<Song> matching = new ArrayList<>();
+        for (Song song : tree) {
+            if (song.getYear() >= 2011 && song.getYear() <= 2017 && song.getLoudness() <= -4) {
+                matching.add(song);
+            }
+        }
+
+        matching.sort(java.util.Comparator.comparingInt(Song::getEnergy).reversed());
+        int[] highest = backend.topK(Song::getEnergy, 50, true);
+        Assertions.assertEquals(50, highest.length);
+        for (int i = 0; i < highest.length; i++) {
+            Assertions.assertEquals(matching.get(i).getEnergy(), backend.getSong(highest[i]).getEnergy());
+        }
+
+        matching.sort(java.util.Comparator.comparingInt(Song::getBPM));
+        int[] lowest = backend.topK(Song::getBPM, 3, false);
+        for (int i = 0; i < lowest.length; i++) {
+            Assertions.assertEquals(matching.get(i).getBPM(), backend.getSong(lowest[i]).getBPM());
+        }
+
+        Assertions.assertEquals(matching.size(), backend.topK(Song::getLiveness, 10000, true).length);
+        Assertions.assertEquals(0, backend.topK(Song::getLiveness, 0, true).length);
+    }
+
+    /**
+     * This test method checks that fiveMost returns the same songs as topK for
+     * wide filters, which walk the danceability index, and narrow filters,
+     * which scan the matching songs.
+     */
+    @Test
+    public void roleTest11() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        Integer[][] filters = { { null, null, null }, { 2012, null, -5 }, { 2014, 2014, null },
+                { 2010, 2019, -12 }, { 2030, null, null } };
+        for (Integer[] filter : filters) {
+            backend.getRange(filter[0], filter[1]);
+            backend.setFilter(filter[2]);
+
+            int[] expected = backend.topK(Song::getDanceability, 5, true);
+            int[] actual = backend.fiveMostIds();
+            Assertions.assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                Assertions.assertEquals(expected[i], actual[i]);
+            }
+        }
+    }
+
+    /**
+     * Checks that repeated queries are answered from the cache, that the cache
+     * evicts its least recently used result when it is full, and that it is
+     * invalidated when songs are loaded or removed.
+     */
+    @Test
+    public void roleTest12() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree, 2);
+        QueryCache cache = backend.getQueryCache();
+
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        List<String> range = backend.getRange(2012, 2014);
+        Assertions.assertEquals(0L, cache.getHits());
+        Assertions.assertEquals(1L, cache.getMisses());
+
+        // getRange and setFilter share results for the same year range and threshold
+        Assertions.assertEquals(range, backend.setFilter(null));
+        Assertions.assertEquals(range, backend.getRange(2012, 2014));
+        Assertions.assertEquals(2L, cache.getHits());
+
+        // callers may modify the returned arrays without changing the cache
+        backend.getRangeIds(2012, 2014)[0] = -1;
+        Assertions.assertEquals(range, backend.getRange(2012, 2014));
+
+        // the result for 2012-2014 is evicted once two newer results are cached
+        List<String> fiveMost = backend.fiveMost();
+        backend.getRange(2015, 2016);
+        Assertions.assertEquals(2, cache.size());
+        long misses = cache.getMisses();
+        Assertions.assertEquals(range, backend.getRange(2012, 2014));
+        Assertions.assertEquals(misses + 1, cache.getMisses());
+
+        // removing a song invalidates the cache
+        String removedTitle = range.get(0);
+        Assertions.assertTrue(backend.removeSong(removedTitle) > 0);
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertFalse(backend.getRange(2012, 2014).contains(removedTitle));
+
+        // loading songs invalidates the cache
+        backend.fiveMost();
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertTrue(backend.getRange(2012, 2014).contains(removedTitle));
+        Assertions.assertEquals(fiveMost.size(), backend.fiveMost().size());
+    }
+
+    /**
+     * Checks that bitmaps match the songs that a scan of the tree finds, that
+     * they combine with and/or, and that they stay correct when IDs move
+     * between sparse and dense containers.
+     */
+    @Test
+    public void roleTest13() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        SongBitmap energetic = backend.matching(SongAttribute.ENERGY, 80, null);
+        SongBitmap fast = backend.matching(SongAttribute.BPM, 125, 130);
+        SongBitmap live = backend.matching(SongAttribute.LIVENESS, null, 10);
+        SongBitmap combined = energetic.and(fast).or(live);
+
+        List<Integer> expected = new ArrayList<>();
+        for (Song song : tree) {
+            if ((song.getEnergy() >= 80 && song.getBPM() >= 125 && song.getBPM() <= 130)
+                    || song.getLiveness() <= 10) {
+                expected.add(backend.getId(song));
+            }
+        }
+        expected.sort(null);
+        List<Integer> actual = new ArrayList<>();
+        combined.forEach(actual::add);
+        Assertions.assertEquals(expected, actual);
+        Assertions.assertTrue(combined.cardinality() > 0);
+
+        // removed songs drop out of the bitmaps
+        Song removed = backend.getSong(actual.get(0));
+        backend.removeSong(removed.getTitle());
+        Assertions.assertFalse(backend.matching(SongAttribute.LIVENESS, null, null).contains(actual.get(0)));
+        Assertions.assertTrue(backend.matching(SongAttribute.YEAR, 2030, 2010).isEmpty());
+
+        // a dense set of IDs crosses from an array to a bitmap container and back
+        SongBitmap even = new SongBitmap();
+        SongBitmap thirds = new SongBitmap();
+        for (int id = 0; id < 200_000; id += 2) {
+            even.add(id);
+        }
+        for (int id = 0; id < 200_000; id += 3) {
+            thirds.add(id);
+        }
+        Assertions.assertEquals(100_000, even.cardinality());
+        Assertions.assertEquals(200_000 / 6 + 1, even.and(thirds).cardinality());
+        Assertions.assertEquals(100_000 + 66_667 - (200_000 / 6 + 1), even.or(thirds).cardinality());
+        for (int id = 0; id < 65536; id += 2) {
+            if (id % 32 != 0) {
+                even.remove(id);
+            }
+        }
+        Assertions.assertEquals(2048 + 100_000 - 32768, even.cardinality());
+        Assertions.assertTrue(even.contains(64));
+        Assertions.assertFalse(even.contains(66));
+        Assertions.assertTrue(even.contains(65538));
+        int[] ids = even.toArray();
+        for (int i = 1; i < ids.length; i++) {
+            Assertions.assertTrue(ids[i - 1] < ids[i]);
+        }
+    }
+
+    /**
+     * Checks that queries over any attributes return the same songs, in the
+     * same order, as filtering and sorting every song, whichever plan is
+     * chosen for them.
+     */
+    @Test
+    public void roleTest14() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        Query[] queries = {
+            new Query(),
+            new Query().limit(7),
+            new Query().where(SongAttribute.YEAR, 2015, 2015).orderBy(SongAttribute.ENERGY, true),
+            new Query().where(SongAttribute.BPM, 100, 120).where(SongAttribute.ENERGY, 70, null)
+                    .where(SongAttribute.BPM, 110, null).orderBy(SongAttribute.LIVENESS, false).limit(4),
+            new Query().where(SongAttribute.LIVENESS, null, 60).orderBy(SongAttribute.YEAR, false).limit(3),
+            new Query().where(SongAttribute.DANCEABILITY, 60, 80).orderBy(SongAttribute.DANCEABILITY, true)
+                    .limit(10),
+            new Query().where(SongAttribute.LOUDNESS, -6, -4).where(SongAttribute.YEAR, 2012, 2016)
+                    .orderBy(SongAttribute.LOUDNESS, false),
+            new Query().where(SongAttribute.ENERGY, 90, 10),
+            new Query().orderBy(SongAttribute.YEAR, true).limit(0),
+        };
+
+        for (Query query : queries) {
+            List<Song> expected = new ArrayList<>();
+            for (Song song : tree) {
+                if (query.matches(song)) {
+                    expected.add(song);
+                }
+            }
+            expected.sort(query.order(backend::getId));
+
+            int[] actual = backend.query(query);
+            Assertions.assertEquals(Math.min(expected.size(), query.getLimit()), actual.length);
+            for (int i = 0; i < actual.length; i++) {
+                Assertions.assertEquals(backend.getId(expected.get(i)), actual[i]);
+            }
+        }
+
+        // small limits are answered from an index in the order of the query,
+        // and selective predicates by scanning their own matches
+        Assertions.assertEquals("ordered scan of all songs", backend.explain(queries[1]));
+        Assertions.assertEquals("ordered scan of YEAR index", backend.explain(queries[4]));
+        Assertions.assertEquals("scan of YEAR index", backend.explain(queries[2]));
+        Assertions.assertEquals("scan of all songs",
+                backend.explain(new Query().orderBy(SongAttribute.BPM, false)));
+    }
+
+    /**
+     * Checks that the streaming variants return the same songs as the methods
+     * that build lists, and that they can be paged with skip and limit.
+     */
+    @Test
+    public void roleTest15() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        List<String> range = backend.getRange(2011, 2017);
+        Assertions.assertEquals(range,
+                backend.streamRange(2011, 2017).map(Song::getTitle).collect(Collectors.toList()));
+        Assertions.assertEquals(range.subList(20, 30),
+                backend.streamRange(2011, 2017).skip(20).limit(10).map(Song::getTitle).collect(Collectors.toList()));
+
+        // the filter applies to later streams, and the year range to the filter
+        List<String> filtered = backend.setFilter(-7);
+        Assertions.assertEquals(filtered,
+                backend.streamFilter(-7).map(Song::getTitle).collect(Collectors.toList()));
+        Assertions.assertEquals(filtered,
+                backend.streamRange(2011, 2017).map(Song::getTitle).collect(Collectors.toList()));
+        Assertions.assertEquals(backend.getRange(null, null),
+                backend.streamRange(null, null).map(Song::getTitle).collect(Collectors.toList()));
+
+        Query[] queries = {
+            new Query().limit(7),
+            new Query().where(SongAttribute.YEAR, 2015, 2015).orderBy(SongAttribute.ENERGY, true),
+            new Query().where(SongAttribute.LIVENESS, null, 60).orderBy(SongAttribute.YEAR, false).limit(3),
+        };
+        for (Query query : queries) {
+            int[] expected = backend.query(query);
+            int[] actual = backend.stream(query).mapToInt(backend::getId).toArray();
+            Assertions.assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                Assertions.assertEquals(expected[i], actual[i]);
+            }
+        }
+    }
+
+    /**
+     * Checks that following the page tokens returns every song of getRange
+     * exactly once and in order, that a token still works after its last song
+     * is removed, and that malformed tokens are rejected.
+     */
+    @Test
+    public void roleTest16() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+            // duplicate every song, so pages have to tell songs apart by ID
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        backend.setFilter(-5);
+        int[] expected = backend.getRangeIds(2012, 2017);
+
+        List<Integer> actual = new ArrayList<>();
+        SongPage page = backend.getRangePage(2012, 2017, 7);
+        String thirdToken = null;
+        int pages = 1;
+        while (true) {
+            Assertions.assertTrue(page.getIds().length <= 7);
+            for (int id : page.getIds()) {
+                actual.add(id);
+            }
+            if (page.getNextToken() == null) {
+                break;
+            }
+            if (pages == 2) {
+                thirdToken = page.getNextToken();
+            }
+            page = backend.nextPage(page.getNextToken(), 7);
+            pages++;
+        }
+        Assertions.assertEquals(expected.length, actual.size());
+        for (int i = 0; i < expected.length; i++) {
+            Assertions.assertEquals(expected[i], actual.get(i));
+        }
+
+        // the token keeps its query even after the filter changes
+        backend.setFilter(null);
+        List<String> third = backend.nextPage(thirdToken, 7).getTitles();
+        Assertions.assertEquals(7, third.size());
+        Assertions.assertEquals(backend.getSong(expected[14]).getTitle(), third.get(0));
+
+        // removing the last song of the previous page does not lose the position
+        backend.removeSong(backend.getSong(expected[13]).getTitle());
+        List<String> afterRemoval = backend.nextPage(thirdToken, 7).getTitles();
+        Assertions.assertEquals(backend.getSong(expected[14]).getTitle(), afterRemoval.get(0));
+
+        Assertions.assertNull(backend.getRangePage(2030, null, 5).getNextToken());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> backend.nextPage("not a token", 5));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> backend.getRangePage(null, null, 0));
+    }
+
+    /**
+     * Checks that the song table holds the same values as the songs, that its
+     * string columns share codes between equal strings, and that its scans
+     * find the same songs as checking every song.
+     */
+    @Test
+    public void roleTest17() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        SongTable table = backend.getSongTable();
+        Assertions.assertEquals(tree.size(), table.size());
+        Map<String, Integer> artistCodes = new HashMap<>();
+        for (Song song : tree) {
+            int row = backend.getId(song);
+            Assertions.assertTrue(table.getSong(row) == song);
+            Assertions.assertEquals(song.getTitle(), table.getTitle(row));
+            Assertions.assertEquals(song.getArtist(), table.getArtist(row));
+            for (SongAttribute attribute : SongAttribute.values()) {
+                Assertions.assertEquals(attribute.of(song), table.get(attribute, row));
+            }
+            Integer code = artistCodes.putIfAbsent(song.getArtist(), table.getArtistCode(row));
+            if (code != null) {
+                Assertions.assertEquals(code.intValue(), table.getArtistCode(row));
+            }
+        }
+        Assertions.assertEquals(artistCodes.size(), table.getArtists().size());
+
+        Query query = new Query().where(SongAttribute.ENERGY, 60, 90).where(SongAttribute.LOUDNESS, -7, null);
+        List<Integer> expected = new ArrayList<>();
+        for (Song song : tree) {
+            if (query.matches(song)) {
+                expected.add(backend.getId(song));
+            }
+        }
+        expected.sort(null);
+        List<Integer> scanned = new ArrayList<>();
+        table.forEachMatching(query, scanned::add);
+        Assertions.assertEquals(expected, scanned);
+
+        List<Integer> fromCandidates = new ArrayList<>();
+        table.forEachMatching(query, backend.matching(SongAttribute.ENERGY, 60, 90), fromCandidates::add);
+        Assertions.assertEquals(expected, fromCandidates);
+
+        // removed songs are no longer scanned
+        int removed = expected.get(0);
+        backend.removeSong(backend.getSong(removed).getTitle());
+        Assertions.assertFalse(table.contains(removed));
+        scanned.clear();
+        table.forEachMatching(query, scanned::add);
+        Assertions.assertFalse(scanned.contains(removed));
+    }
+
+    /**
+     * Checks that loaded songs share one String and code per distinct artist
+     * and genre, and that queries can filter on them.
+     */
+    @Test
+    public void roleTest18() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend backend = new Backend(tree);
+
+        try {
+            backend.readData("songs.csv");
+            backend.readDataMapped("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        SongTable table = backend.getSongTable();
+        Map<String, Song> firstByArtist = new HashMap<>();
+        for (Song song : tree) {
+            Assertions.assertNotNull(song.getGenres());
+            Song first = firstByArtist.putIfAbsent(song.getArtist(), song);
+            if (first != null) {
+                Assertions.assertTrue(first.getArtist() == song.getArtist());
+                Assertions.assertEquals(table.getArtistCode(backend.getId(first)),
+                        table.getArtistCode(backend.getId(song)));
+            }
+        }
+        Assertions.assertEquals(firstByArtist.size(), backend.getSongTable().getArtists().size());
+
+        Query[] queries = {
+            new Query().whereArtist("Katy Perry"),
+            new Query().whereGenre("dance pop").where(SongAttribute.YEAR, 2014, 2016).orderBy(SongAttribute.YEAR, false),
+            new Query().whereArtist("Katy Perry").whereGenre("dance pop").limit(3),
+            new Query().whereArtist("Nobody"),
+        };
+        for (Query query : queries) {
+            List<Integer> expected = new ArrayList<>();
+            List<Song> matches = new ArrayList<>();
+            for (Song song : tree) {
+                if (query.matches(song)) {
+                    matches.add(song);
+                }
+            }
+            matches.sort(query.order(backend::getId));
+            for (Song song : matches.subList(0, Math.min(matches.size(), query.getLimit()))) {
+                expected.add(backend.getId(song));
+            }
+
+            List<Integer> actual = new ArrayList<>();
+            for (int id : backend.query(query)) {
+                actual.add(id);
+            }
+            Assertions.assertEquals(expected, actual);
+        }
+        Assertions.assertEquals(0, backend.query(queries[3]).length);
+        Assertions.assertTrue(backend.query(queries[0]).length > 0);
+    }
+
+    /**
+     * Checks that readData only uses the needed columns of a wide file whose
+     * columns are in a different order, including unneeded columns with
+     * quoted commas and quotes, by comparing it against readDataMapped.
+     */
+    @Test
+    public void roleTest19() {
+        String csv = "extra,dB,title,notes,year,artist,live,top genre,bpm,nrgy,dnce,val,dur\n"
+                + "1,-4,\"Hey, Soul Sister\",\"a, \"\"b\"\", c\",2010,Train,8,neo mellow,97,89,67,80,217\n"
+                + "2,-10,Plain,,2011,Artist,5,pop,1,2,3,\"x,y\",\"z\"\n"
+                + "3,-6,\"Say \"\"Hi\"\"\",\"notes, more\",2012,Somebody,12,dance pop,120,70,55\n";
+
+        IterableRedBlackTree<Song> lines = new IterableRedBlackTree<>();
+        IterableRedBlackTree<Song> mapped = new IterableRedBlackTree<>();
+        try {
+            Path file = Files.createTempFile("wide_songs", ".csv");
+            Files.write(file, csv.getBytes(StandardCharsets.UTF_8));
+            new Backend(lines).readData(file.toString());
+            new Backend(mapped).readDataMapped(file.toString());
+            Files.delete(file);
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+
+        Assertions.assertEquals(3, lines.size());
+        Iterator<Song> expected = mapped.iterator();
+        for (Song song : lines) {
+            Song other = expected.next();
+            Assertions.assertEquals(other.getTitle(), song.getTitle());
+            Assertions.assertEquals(other.getArtist(), song.getArtist());
+            Assertions.assertEquals(other.getGenres(), song.getGenres());
+            for (SongAttribute attribute : SongAttribute.values()) {
+                Assertions.assertEquals(attribute.of(other), attribute.of(song));
+            }
+        }
+        Assertions.assertTrue(lines.contains(new Song("Hey, Soul Sister", null, null, 0, 0, 0, 0, 0, 0)));
+        Assertions.assertTrue(lines.contains(new Song("Say \"Hi\"", null, null, 0, 0, 0, 0, 0, 0)));
+
+        // a file without one of the needed columns is rejected
+        try {
+            Path file = Files.createTempFile("missing_column", ".csv");
+            Files.write(file, "title,artist,top genre,year,bpm,nrgy,dnce,dB\nA,B,C,1,2,3,4,5\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            IOException thrown = Assertions.assertThrows(IOException.class,
+                    () -> new Backend(new IterableRedBlackTree<>()).readData(file.toString()));
+            Assertions.assertEquals("Missing column: live", thrown.getCause().getMessage());
+            Files.delete(file);
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while writing the file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Checks that loading a snapshot restores the same songs in the same order
+     * as the tree it was saved from, and that files that are not snapshots
+     * are rejected.
+     */
+    @Test
+    public void roleTest20() {
+        IterableRedBlackTree<Song> original = new IterableRedBlackTree<>();
+        IterableRedBlackTree<Song> restored = new IterableRedBlackTree<>();
+        Backend backend = new Backend(restored);
+
+        try {
+            new Backend(original).readData("songs.csv");
+            Path snapshot = Files.createTempFile("songs", ".snapshot");
+            new Backend(original).saveSnapshot(snapshot);
+            backend.loadSnapshot(snapshot);
+            Files.delete(snapshot);
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while using the snapshot: " + e.getMessage());
+        }
+
+        Assertions.assertEquals(original.size(), restored.size());
+        Iterator<Song> expected = original.iterator();
+        for (Song song : restored) {
+            Song other = expected.next();
+            Assertions.assertEquals(other.getTitle(), song.getTitle());
+            Assertions.assertEquals(other.getArtist(), song.getArtist());
+            Assertions.assertEquals(other.getGenres(), song.getGenres());
+            for (SongAttribute attribute : SongAttribute.values()) {
+                Assertions.assertEquals(attribute.of(other), attribute.of(song));
+            }
+        }
+        Assertions.assertEquals(backend.getRange(2012, 2014).size(),
+                new Backend(original).getRange(2012, 2014).size());
+
+        Assertions.assertThrows(IOException.class,
+                () -> backend.loadSnapshot(Paths.get("songs.csv")));
+    }
+
+    /**
+     * Checks that a memory-mapped catalog returns the same songs as the tree
+     * it was written from, that a Backend can query it, and that it cannot be
+     * changed.
+     */
+    @Test
+    public void roleTest21() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        MappedSongCatalog catalog = null;
+        Path file = null;
+        try {
+            new Backend(tree).readData("songs.csv");
+            file = Files.createTempFile("songs", ".catalog");
+            MappedSongCatalog.write(file, tree);
+            catalog = new MappedSongCatalog(file);
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while using the catalog: " + e.getMessage());
+        }
+
+        Assertions.assertEquals(tree.size(), catalog.size());
+        Iterator<Song> expected = tree.iterator();
+        for (Song song : catalog) {
+            Song other = expected.next();
+            Assertions.assertEquals(other.getTitle(), song.getTitle());
+            Assertions.assertEquals(other.getGenres(), song.getGenres());
+            for (SongAttribute attribute : SongAttribute.values()) {
+                Assertions.assertEquals(attribute.of(other), attribute.of(song));
+            }
+        }
+
+        Song probe = new Song("Hey, Soul Sister", null, null, 0, 0, 0, 0, 0, 0);
+        Assertions.assertTrue(catalog.contains(probe));
+        Assertions.assertFalse(catalog.contains(new Song("Not A Song", null, null, 0, 0, 0, 0, 0, 0)));
+
+        Song low = new Song("B", null, null, 0, 0, 0, 0, 0, 0);
+        Song high = new Song("D", null, null, 0, 0, 0, 0, 0, 0);
+        List<String> inTree = new ArrayList<>();
+        tree.forEachInRange(low, high, song -> inTree.add(song.getTitle()));
+        List<String> inCatalog = new ArrayList<>();
+        catalog.forEachInRange(low, high, song -> inCatalog.add(song.getTitle()));
+        Assertions.assertEquals(inTree, inCatalog);
+
+        // only the songs that match the filter are created
+        Query query = new Query().whereArtist("Train").where(SongAttribute.YEAR, 2010, 2012);
+        List<String> matchingInTree = new ArrayList<>();
+        for (Song song : tree) {
+            if (query.matches(song)) {
+                matchingInTree.add(song.getTitle());
+            }
+        }
+        List<String> matchingInCatalog = new ArrayList<>();
+        catalog.forEachMatching(query, song -> matchingInCatalog.add(song.getTitle()));
+        Assertions.assertTrue(matchingInTree.contains("Hey, Soul Sister"));
+        Assertions.assertEquals(matchingInTree, matchingInCatalog);
+
+        // a backend over the catalog scans it instead of building indexes
+        Backend backend = new Backend(catalog);
+        backend.setFilter(-6);
+        Backend treeBackend = new Backend(tree);
+        treeBackend.setFilter(-6);
+        Assertions.assertEquals(treeBackend.getRange(2013, 2016), backend.getRange(2013, 2016));
+        Assertions.assertEquals(treeBackend.setFilter(-8), backend.setFilter(-8));
+        Assertions.assertEquals(treeBackend.fiveMost(), backend.fiveMost());
+        Assertions.assertEquals(treeBackend.getRange(2015, 2015),
+                backend.streamRange(2015, 2015).map(Song::getTitle).collect(Collectors.toList()));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> backend.getSongTable());
+
+        MappedSongCatalog readOnly = catalog;
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> readOnly.insert(probe));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> readOnly.remove(probe));
+        Assertions.assertThrows(IOException.class, () -> new MappedSongCatalog(Paths.get("songs.csv")));
+
+        try {
+            Files.delete(file);
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while deleting the catalog: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This test method checks that the disk-backed B+tree keeps random values,
+     * including duplicates, in sorted order across many pages with a small
+     * buffer pool, supports bounded iteration and removal, and keeps its
+     * values when the file is opened again.
+     */
+    @Test
+    public void roleTest22() {
+        Path file = null;
+        try {
+            file = Files.createTempFile("bplustree", ".pages");
+            List<Integer> expected = new ArrayList<>();
+            try (DiskBPlusTree<Integer> tree = new DiskBPlusTree<>(file, DiskBPlusTree.INTEGERS,
+                    DiskBPlusTree.MIN_POOL_PAGES, BufferPool.Policy.CLOCK)) {
+                Random random = new Random(23);
+                for (int i = 0; i < 20000; i++) {
+                    int value = random.nextInt(5000);
+                    tree.insert(value);
+                    expected.add(value);
+                }
+                expected.sort(null);
+
+                Assertions.assertEquals(expected.size(), tree.size());
+                Assertions.assertTrue(tree.getPageCount() > DiskBPlusTree.MIN_POOL_PAGES);
+                List<Integer> actual = new ArrayList<>();
+                tree.forEach(actual::add);
+                Assertions.assertEquals(expected, actual);
+                Assertions.assertTrue(tree.contains(expected.get(0)));
+                Assertions.assertFalse(tree.contains(5000));
+
+                tree.setIteratorMin(1000);
+                tree.setIteratorMax(1001);
+                List<Integer> bounded = new ArrayList<>();
+                tree.forEach(bounded::add);
+                Assertions.assertEquals(expected.stream().filter(v -> v >= 1000 && v <= 1001)
+                        .collect(Collectors.toList()), bounded);
+                tree.setIteratorMin(null);
+                tree.setIteratorMax(null);
+                Assertions.assertFalse(tree.iterator(5000, null).hasNext());
+
+                int removed = (int) expected.stream().filter(v -> v >= 100 && v <= 4899).count();
+                Assertions.assertEquals(removed, tree.removeRange(100, 4899));
+                expected.removeIf(v -> v >= 100 && v <= 4899);
+                Assertions.assertTrue(tree.remove(expected.get(0)));
+                expected.remove(0);
+                Assertions.assertFalse(tree.contains(2500));
+                Assertions.assertEquals(expected.size(), tree.size());
+            }
+
+            try (DiskBPlusTree<Integer> reopened = new DiskBPlusTree<>(file, DiskBPlusTree.INTEGERS)) {
+                List<Integer> actual = new ArrayList<>();
+                reopened.forEach(actual::add);
+                Assertions.assertEquals(expected, actual);
+                reopened.clear();
+                Assertions.assertTrue(reopened.isEmpty());
+                Assertions.assertEquals(2, reopened.getPageCount());
+            }
+
+            Files.write(file, new byte[] { 1, 2, 3, 4 });
+            Path corrupt = file;
+            Assertions.assertThrows(IOException.class, () -> new DiskBPlusTree<>(corrupt, DiskBPlusTree.INTEGERS));
+            Files.delete(file);
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while using the B+tree: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This test method checks the eviction order of the CLOCK buffer pool,
+     * that dirty and pinned pages are handled, that a page that cannot be
+     * written is kept, and that the hit rate of a B+tree grows with the size
+     * of its pool.
+     */
+    @Test
+    public void roleTest23() {
+        Map<Integer, String> disk = new HashMap<>();
+        BufferPool<String> pool = new BufferPool<>(2, BufferPool.Policy.CLOCK, new BufferPool.PageIO<String>() {
+            public String read(int pageId) {
+                return disk.get(pageId);
+            }
+
+            public void write(int pageId, String page) {
+                disk.put(pageId, page);
+            }
+        });
+        disk.put(1, "one");
+        disk.put(2, "two");
+
+        Path small = null;
+        Path large = null;
+        try {
+            Assertions.assertEquals("one", pool.get(1));
+            pool.put(3, "three");
+            pool.pin(3);
+            // the hand clears the bit of page 1, skips the pinned page 3 and then evicts page 1
+            Assertions.assertEquals("two", pool.get(2));
+            Assertions.assertEquals(1, pool.getEvictions());
+            Assertions.assertFalse(disk.containsKey(3));
+
+            // once unpinned, the dirty page 3 is written when it is evicted
+            pool.unpin(3);
+            Assertions.assertEquals("one", pool.get(1));
+            Assertions.assertEquals("three", disk.get(3));
+            Assertions.assertEquals("two", pool.get(2));
+            Assertions.assertEquals(1, pool.getHits());
+            Assertions.assertEquals(3, pool.getMisses());
+
+            pool.pin(1);
+            pool.pin(2);
+            Assertions.assertThrows(IllegalStateException.class, () -> pool.get(3));
+
+            // a dirty page that cannot be written is not evicted from an LRU pool
+            BufferPool<String> failing = new BufferPool<>(1, BufferPool.Policy.LRU, new BufferPool.PageIO<String>() {
+                public String read(int pageId) {
+                    return disk.get(pageId);
+                }
+
+                public void write(int pageId, String page) throws IOException {
+                    throw new IOException("disk full");
+                }
+            });
+            failing.put(4, "four");
+            Assertions.assertThrows(IOException.class, () -> failing.get(1));
+            Assertions.assertEquals("four", failing.get(4));
+            Assertions.assertEquals(0, failing.getEvictions());
+
+            small = Files.createTempFile("bplustree", ".pages");
+            large = Files.createTempFile("bplustree", ".pages");
+            try (DiskBPlusTree<Integer> smallPool = new DiskBPlusTree<>(small, DiskBPlusTree.INTEGERS,
+                    DiskBPlusTree.MIN_POOL_PAGES, BufferPool.Policy.CLOCK);
+                    DiskBPlusTree<Integer> largePool = new DiskBPlusTree<>(large, DiskBPlusTree.INTEGERS,
+                            1024, BufferPool.Policy.LRU)) {
+                Random random = new Random(5);
+                for (int i = 0; i < 50000; i++) {
+                    int value = random.nextInt();
+                    smallPool.insert(value);
+                    largePool.insert(value);
+                }
+                for (int i = 0; i < 2000; i++) {
+                    int value = random.nextInt();
+                    smallPool.contains(value);
+                    largePool.contains(value);
+                }
+
+                Assertions.assertTrue(smallPool.getPageMisses() > 0);
+                Assertions.assertTrue(largePool.getHitRate() > smallPool.getHitRate());
+                Assertions.assertTrue(largePool.getHitRate() > 0.9);
+            }
+            Files.delete(small);
+            Files.delete(large);
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while using the buffer pool: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This test method checks that the Backend gives the same results over a
+     * disk-backed B+tree of songs as over the red-black tree.
+     */
+    @Test
+    public void roleTest24() {
+        try {
+            Path file = Files.createTempFile("songs", ".pages");
+            try (DiskBPlusTree<Song> tree = new DiskBPlusTree<>(file, DiskBPlusTree.SONGS)) {
+                Backend backend = new Backend(tree);
+                backend.readData("songs.csv");
+                Backend treeBackend = new Backend(new IterableRedBlackTree<>());
+                treeBackend.readData("songs.csv");
+
+                Assertions.assertEquals(treeBackend.getRange(2010, 2019), backend.getRange(2010, 2019));
+                Assertions.assertEquals(treeBackend.setFilter(-5), backend.setFilter(-5));
+                Assertions.assertEquals(treeBackend.fiveMost(), backend.fiveMost());
+                Assertions.assertTrue(tree.contains(new Song("Hey, Soul Sister", null, null, 0, 0, 0, 0, 0, 0)));
+
+                // the songs stay in the file, and are scanned instead of indexed
+                Assertions.assertThrows(UnsupportedOperationException.class, () -> backend.getSongTable());
+                Assertions.assertEquals(1, backend.removeSong("Hey, Soul Sister"));
+                treeBackend.removeSong("Hey, Soul Sister");
+                Assertions.assertEquals(treeBackend.getRange(2010, 2010), backend.getRange(2010, 2010));
+                Assertions.assertFalse(backend.getRange(2010, 2010).contains("Hey, Soul Sister"));
+
+                // the other loaders hand each song to the B+tree as it is read
+                backend.setFilter(null);
+                treeBackend.setFilter(null);
+                Path snapshot = Files.createTempFile("songs", ".snapshot");
+                Path copyFile = Files.createTempFile("songs", ".pages");
+                backend.saveSnapshot(snapshot);
+                try (DiskBPlusTree<Song> copy = new DiskBPlusTree<>(copyFile, DiskBPlusTree.SONGS)) {
+                    Backend copyBackend = new Backend(copy);
+                    copyBackend.loadSnapshot(snapshot);
+                    Assertions.assertEquals(backend.getRange(null, null), copyBackend.getRange(null, null));
+                    copyBackend.readDataMapped("songs.csv");
+                    copyBackend.readDataParallel("songs.csv");
+                    Assertions.assertEquals(tree.size() + 2 * treeBackend.getRange(null, null).size() + 2,
+                            copy.size());
+                    Assertions.assertEquals(3 * treeBackend.getRange(2015, 2015).size(),
+                            copyBackend.getRange(2015, 2015).size());
+                }
+                Files.delete(snapshot);
+                Files.delete(copyFile);
+            }
+            Files.delete(file);
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while using the B+tree: " + e.getMessage());
+        }
+    }
+
+    /**
+     * This test method checks that two backends over the same tree each keep
+     * their own IDs for the songs, so that neither one breaks the indexes of
+     * the other.
+     */
+    @Test
+    public void roleTest25() {
+        IterableRedBlackTree<Song> tree = new IterableRedBlackTree<>();
+        Backend first = new Backend(tree);
+
+        try {
+            first.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+        List<String> range = first.getRange(2012, 2014);
+        int[] rangeIds = first.getRangeIds(2012, 2014);
+
+        // indexing the same songs again in a second backend leaves the first alone
+        Backend second = new Backend(tree);
+        Assertions.assertTrue(Arrays.equals(rangeIds, first.getRangeIds(2012, 2014)));
+        Assertions.assertEquals(range, second.getRange(2012, 2014));
+        for (Song song : tree) {
+            Assertions.assertTrue(first.getSong(first.getId(song)) == song);
+            Assertions.assertTrue(second.getSong(second.getId(song)) == song);
+        }
+
+        // songs loaded through one backend are picked up by the other
+        try {
+            second.readData("songs.csv");
+        } catch (IOException e) {
+            Assertions.fail("Exception occurred while reading data from the file: " + e.getMessage());
+        }
+        first.rebuildIndexes();
+        Assertions.assertEquals(2 * range.size(), first.getRange(2012, 2014).size());
+        Assertions.assertEquals(second.getRange(2012, 2014), first.getRange(2012, 2014));
+        Assertions.assertEquals(second.fiveMost(), first.fiveMost());
+
+        Query query = new Query().where(SongAttribute.ENERGY, 70, null).orderBy(SongAttribute.YEAR, true).limit(20);
+        Assertions.assertEquals(second.stream(query).collect(Collectors.toList()),
+                first.stream(query).collect(Collectors.toList()));
+        for (int id : first.query(query)) {
+            Assertions.assertEquals(id, first.getId(first.getSong(id)));
+        }
+    }
+}
@@ -11,13 +11,17 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
      * Performs the naive binary search tree insert algorithm to recursively
      * insert the provided newNode (which has already been initialized with a
      * data value) into the provided tree/subtree. When the provided subtree
-     * is null, this method does nothing.
+     * is null, this method does nothing. The subtree size of every node on
+     * the path to the new node is incremented.
      */
     protected void insertHelper(BSTNode<T> newNode, BSTNode<T> subtree) {
         if (subtree == null) {
             return;
         }
 
+        // the new node will end up somewhere below this node
+        subtree.subtreeSize++;
+
         // if value is less than or equal to current node then go to left subtree
         if (newNode.getData().compareTo(subtree.getData()) <= 0) {
             // if left subtree node is null then insert node in that spot
@@ -58,8 +62,6 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
             // recursively calls insetHelper() method to insert a new node
             insertHelper(newNode, root);
         }
-
-        size();
     }
 
     /**
@@ -90,27 +92,90 @@ public class BinarySearchTree<T extends Comparable<T>> implements SortedCollecti
 
     /**
      * Counts the number of values in the collection, with each duplicate value
-     * being counted separately within the value returned.
+     * being counted separately within the value returned. This reads the
+     * subtree size of the root node, so it runs in constant time.
      * 
      * @return the number of values in the collection, including duplicates
      */
     @Override
     public int size() {
-        return sizeHelper(root);
+        return root == null ? 0 : root.getSubtreeSize();
+    }
+
+    /**
+     * Counts the values in the tree that are smaller than key, which is also
+     * the position key would have in the sorted order of the values.
+     * 
+     * @param key the value to compare against
+     * @return the number of values that are smaller than key
+     */
+    public int rank(Comparable<T> key) {
+        return countBelow(key, false);
     }
 
     /**
-     * Recursive helper method to calculate the size of the tree.
+     * Finds the value at a position in the sorted order of the values in the
+     * tree, with duplicates each taking their own position.
      * 
-     * @param node the root of the subtree
-     * @return the size of the subtree rooted at the given node
+     * @param index the position of the value, starting from 0
+     * @return the value at that position
+     * @throws IndexOutOfBoundsException when index is negative or not smaller
+     *                                   than the size of the tree
      */
-    private int sizeHelper(BSTNode<T> node) {
-        if (node == null) {
-            return 0;
+    public T select(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+
+        BSTNode<T> curr = root;
+        while (true) {
+            int leftSize = curr.getLeft() == null ? 0 : curr.getLeft().getSubtreeSize();
+            if (index < leftSize) {
+                curr = curr.getLeft();
+            } else if (index == leftSize) {
+                return curr.getData();
+            } else {
+                index -= leftSize + 1;
+                curr = curr.getRight();
+            }
+        }
+    }
+
+    /**
+     * Counts the values in the tree that are between min and max, using the
+     * same inclusive bounds as the iterators of sorted collections.
+     * 
+     * @param min the smallest value to count, or null for no minimum
+     * @param max the largest value to count, or null for no maximum
+     * @return the number of values from min to max
+     */
+    public int countInRange(Comparable<T> min, Comparable<T> max) {
+        int atMostMax = max == null ? size() : countBelow(max, true);
+        int belowMin = min == null ? 0 : countBelow(min, false);
+        return Math.max(0, atMostMax - belowMin);
+    }
+
+    /**
+     * Helper method that counts the values in the tree that are smaller than
+     * key, or smaller than or equal to key when inclusive is true. Every left
+     * subtree that is passed over on the way down is counted as a whole.
+     */
+    private int countBelow(Comparable<T> key, boolean inclusive) {
+        int count = 0;
+        BSTNode<T> curr = root;
+
+        while (curr != null) {
+            int comparison = key.compareTo(curr.getData());
+            if (comparison > 0 || (inclusive && comparison == 0)) {
+                // this node and its whole left subtree are counted
+                count += 1 + (curr.getLeft() == null ? 0 : curr.getLeft().getSubtreeSize());
+                curr = curr.getRight();
+            } else {
+                curr = curr.getLeft();
+            }
         }
 
-        return 1 + sizeHelper(node.getLeft()) + sizeHelper(node.getRight());
+        return count;
     }
 
     /**
@@ -0,0 +1,127 @@
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * This class is a bitmap index over one int attribute of songs. Each distinct
+ * value of the attribute maps to a SongBitmap with the IDs of the songs that
+ * have that value. The song attributes in the catalog only take a few hundred
+ * distinct values, so there is a bitmap per value rather than per range of
+ * values. Predicates on different attributes can be combined by intersecting
+ * or uniting the bitmaps returned by range.
+ */
+public class BitmapIndex {
+
+    // the attribute that this index is keyed by
+    private final SongAttribute attribute;
+    // the IDs of the songs with each attribute value
+    private final TreeMap<Integer, SongBitmap> bitmaps = new TreeMap<>();
+
+    /**
+     * Creates an empty index keyed by attribute.
+     *
+     * @param attribute the attribute to index
+     */
+    public BitmapIndex(SongAttribute attribute) {
+        this.attribute = attribute;
+    }
+
+    /**
+     * Adds a song to the index by its ID.
+     *
+     * @param song the song to add
+     * @param id   the ID of the song
+     */
+    public void add(Song song, int id) {
+        bitmaps.computeIfAbsent(attribute.of(song), value -> new SongBitmap()).add(id);
+    }
+
+    /**
+     * Removes a song from the index by its ID.
+     *
+     * @param song the song to remove
+     * @param id   the ID of the song
+     * @return true if the song was in the index
+     */
+    public boolean remove(Song song, int id) {
+        int value = attribute.of(song);
+        SongBitmap bitmap = bitmaps.get(value);
+        if (bitmap == null || !bitmap.remove(id)) {
+            return false;
+        }
+        if (bitmap.isEmpty()) {
+            bitmaps.remove(value);
+        }
+        return true;
+    }
+
+    /**
+     * Removes all songs from the index.
+     */
+    public void clear() {
+        bitmaps.clear();
+    }
+
+    /**
+     * Creates a bitmap of the IDs of the songs whose attribute is from low to
+     * high (inclusive), by uniting the bitmaps of the values in that range.
+     *
+     * @param low  the smallest attribute value, or null for no minimum
+     * @param high the largest attribute value, or null for no maximum
+     * @return a new bitmap that the caller may change
+     */
+    public SongBitmap range(Integer low, Integer high) {
+        SongBitmap result = new SongBitmap();
+        if (low != null && high != null && low > high) {
+            return result;
+        }
+        for (SongBitmap bitmap : values(low, high).values()) {
+            result.orInPlace(bitmap);
+        }
+        return result;
+    }
+
+    /**
+     * Counts the songs whose attribute is from low to high (inclusive) without
+     * building their bitmap.
+     *
+     * @param low  the smallest attribute value, or null for no minimum
+     * @param high the largest attribute value, or null for no maximum
+     * @return the number of songs in the range
+     */
+    public int countInRange(Integer low, Integer high) {
+        if (low != null && high != null && low > high) {
+            return 0;
+        }
+        int count = 0;
+        for (SongBitmap bitmap : values(low, high).values()) {
+            count += bitmap.cardinality();
+        }
+        return count;
+    }
+
+    /**
+     * @return the number of distinct attribute values in the index
+     */
+    public int distinctValues() {
+        return bitmaps.size();
+    }
+
+    // Helper method to view the bitmaps of the values from low to high
+    private NavigableMap<Integer, SongBitmap> values(Integer low, Integer high) {
+        NavigableMap<Integer, SongBitmap> values = bitmaps;
+        if (low != null) {
+            values = values.tailMap(low, true);
+        }
+        if (high != null) {
+            values = values.headMap(high, true);
+        }
+        return values;
+    }
+
+    /**
+     * @return the attribute that this index is keyed by
+     */
+    public SongAttribute getAttribute() {
+        return attribute;
+    }
+}
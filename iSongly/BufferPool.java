@@ -0,0 +1,294 @@
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class caches a bounded number of pages of a file in memory. Pages are
+ * read through a PageIO when they are first requested, and a dirty page is
+ * written back when it is evicted or the pool is flushed. The page to evict is
+ * chosen with either the CLOCK algorithm, which gives every page a second
+ * chance when it was used since the hand last passed it, or by evicting the
+ * least recently used page. Pinned pages are never evicted, so callers pin the
+ * pages they will still change during an operation.
+ *
+ * Every method is synchronized, since even a hit changes the pool: it sets the
+ * reference bit or moves the page to the end of the LRU order, and counts the
+ * hit. Several threads can therefore read pages through one pool at once.
+ *
+ * @param <P> the in-memory form of a page
+ */
+public class BufferPool<P> {
+
+    /**
+     * How the page to evict is chosen when the pool is full.
+     */
+    public enum Policy {
+        CLOCK,
+        LRU
+    }
+
+    /**
+     * Reads and writes the pages of the underlying file.
+     */
+    public interface PageIO<P> {
+        P read(int pageId) throws IOException;
+
+        void write(int pageId, P page) throws IOException;
+    }
+
+    /**
+     * A page that is held by the pool.
+     */
+    private static class Frame<P> {
+        private final int pageId;
+        private final P page;
+        private boolean dirty = false;
+        private boolean referenced = true;
+        private int pins = 0;
+
+        Frame(int pageId, P page) {
+            this.pageId = pageId;
+            this.page = page;
+        }
+    }
+
+    private final int capacity;
+    private final Policy policy;
+    private final PageIO<P> io;
+    // resident pages by ID, in order from least to most recently used for LRU
+    private final Map<Integer, Frame<P>> frames;
+    // slots that the clock hand moves over, only used for CLOCK
+    private final Frame<P>[] clock;
+    private int hand = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates an empty pool.
+     *
+     * @param capacity the maximum number of pages held in memory
+     * @param policy   how to choose the page to evict
+     * @param io       reads and writes pages
+     * @throws IllegalArgumentException when capacity is not positive
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(int capacity, Policy policy, PageIO<P> io) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.io = io;
+        this.frames = policy == Policy.LRU ? new LinkedHashMap<>(16, 0.75f, true) : new HashMap<>();
+        this.clock = policy == Policy.CLOCK ? (Frame<P>[]) new Frame<?>[capacity] : null;
+    }
+
+    /**
+     * Returns a page, reading it when it is not in the pool.
+     *
+     * @param pageId the page to return
+     * @return the page
+     * @throws IOException when the page cannot be read, or a dirty page
+     *                     cannot be written to make room for it
+     */
+    public synchronized P get(int pageId) throws IOException {
+        Frame<P> frame = frames.get(pageId);
+        if (frame != null) {
+            hits++;
+            frame.referenced = true;
+            return frame.page;
+        }
+
+        misses++;
+        P page = io.read(pageId);
+        admit(new Frame<>(pageId, page));
+        return page;
+    }
+
+    /**
+     * Adds a new page to the pool and marks it dirty, so that it is written
+     * when it is evicted or flushed.
+     *
+     * @param pageId the ID of the new page
+     * @param page   the new page
+     * @throws IOException when a dirty page cannot be written to make room
+     */
+    public synchronized void put(int pageId, P page) throws IOException {
+        Frame<P> frame = new Frame<>(pageId, page);
+        frame.dirty = true;
+        admit(frame);
+    }
+
+    /**
+     * Marks a page that is in the pool as changed. Pages that are changed
+     * after they were requested should be pinned until they are marked.
+     *
+     * @param pageId the changed page
+     * @throws IllegalStateException if the page is not in the pool
+     */
+    public synchronized void markDirty(int pageId) throws IllegalStateException {
+        resident(pageId).dirty = true;
+    }
+
+    /**
+     * Prevents a page that is in the pool from being evicted until it is
+     * unpinned as many times as it was pinned.
+     *
+     * @param pageId the page to pin
+     * @throws IllegalStateException if the page is not in the pool
+     */
+    public synchronized void pin(int pageId) throws IllegalStateException {
+        resident(pageId).pins++;
+    }
+
+    /**
+     * Allows a pinned page to be evicted again.
+     *
+     * @param pageId the page to unpin
+     * @throws IllegalStateException if the page is not in the pool
+     */
+    public synchronized void unpin(int pageId) throws IllegalStateException {
+        resident(pageId).pins--;
+    }
+
+    /**
+     * Writes every dirty page, keeping the pages in the pool.
+     *
+     * @throws IOException when a page cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        for (Frame<P> frame : frames.values()) {
+            if (frame.dirty) {
+                io.write(frame.pageId, frame.page);
+                frame.dirty = false;
+            }
+        }
+    }
+
+    /**
+     * Drops every page without writing it, e.g. after the file was truncated.
+     */
+    public synchronized void clear() {
+        frames.clear();
+        if (clock != null) {
+            Arrays.fill(clock, null);
+        }
+    }
+
+    /**
+     * @return the number of requests for pages that were in the pool
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests for pages that had to be read
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the fraction of requests for pages that were in the pool, or 0
+     *     before any page was requested
+     */
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+
+    /**
+     * @return the number of pages that were evicted to make room
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return the maximum number of pages held in memory
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return how the page to evict is chosen
+     */
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    // Helper method to look up a page that must be in the pool
+    private Frame<P> resident(int pageId) {
+        Frame<P> frame = frames.get(pageId);
+        if (frame == null) {
+            throw new IllegalStateException("page " + pageId + " is not in the buffer pool");
+        }
+        return frame;
+    }
+
+    // Helper method to add a frame, evicting another one when the pool is full
+    private void admit(Frame<P> frame) throws IOException {
+        if (policy == Policy.CLOCK) {
+            int slot = frames.size() < capacity ? frames.size() : evictClock();
+            clock[slot] = frame;
+        } else if (frames.size() >= capacity) {
+            evictLeastRecentlyUsed();
+        }
+        frames.put(frame.pageId, frame);
+    }
+
+    // Helper method to move the clock hand to the first unpinned frame that
+    // was not used since the hand last passed it, evict it and return its slot
+    private int evictClock() throws IOException {
+        // two full turns clear every reference bit, so a third means all are pinned
+        for (int step = 0; step < 3 * capacity; step++) {
+            int slot = hand;
+            hand = (hand + 1) % capacity;
+            Frame<P> frame = clock[slot];
+            if (frame.pins > 0) {
+                continue;
+            }
+            if (frame.referenced) {
+                frame.referenced = false;
+                continue;
+            }
+            evict(frame);
+            return slot;
+        }
+        throw new IllegalStateException("every page in the buffer pool is pinned");
+    }
+
+    // Helper method to evict the least recently used unpinned frame
+    private void evictLeastRecentlyUsed() throws IOException {
+        Iterator<Frame<P>> leastRecentFirst = frames.values().iterator();
+        while (leastRecentFirst.hasNext()) {
+            Frame<P> frame = leastRecentFirst.next();
+            if (frame.pins == 0) {
+                // a page that cannot be written stays in the pool
+                if (frame.dirty) {
+                    io.write(frame.pageId, frame.page);
+                }
+                leastRecentFirst.remove();
+                evictions++;
+                return;
+            }
+        }
+        throw new IllegalStateException("every page in the buffer pool is pinned");
+    }
+
+    // Helper method to write back and remove a frame chosen by the clock
+    private void evict(Frame<P> frame) throws IOException {
+        if (frame.dirty) {
+            io.write(frame.pageId, frame.page);
+        }
+        frames.remove(frame.pageId);
+        evictions++;
+    }
+}
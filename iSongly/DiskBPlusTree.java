@@ -0,0 +1,708 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is a sorted collection that keeps its values in a B+tree of
+ * fixed-size pages in a file, so that the collection can be much larger than
+ * the heap. Only the pages held by a BufferPool are kept in memory, decoded
+ * into nodes, and the pool writes changed pages back when it evicts them or
+ * when the tree is flushed or closed. The file can be opened again later to
+ * continue with the values it holds.
+ *
+ * Values are stored in leaf pages, and each leaf links to the next one, so
+ * iterators walk along the leaves instead of going back up the tree. Internal
+ * pages hold separator values and the page numbers of their children; every
+ * value left of a separator is at most the separator and every value right of
+ * it is at least the separator. Pages are split when their encoded values no
+ * longer fit, but they are not merged when values are removed: an empty leaf
+ * stays in the chain until the tree is cleared.
+ *
+ * Values are turned into bytes by a Codec, and a single encoded value can take
+ * up at most a quarter of a page. Methods of the collection interfaces report
+ * errors of the file with an UncheckedIOException. The buffer pool is
+ * synchronized and every read allocates its own buffer, so any number of
+ * threads can iterate over the tree at once as long as it is not changed.
+ *
+ * Layout (all ints are 4 byte big-endian, pages are PAGE_SIZE bytes):
+ *   page 0: int magic, int version, int rootPage, int size, int pageCount
+ *   leaf page: byte 0, int valueCount, int nextLeafPage (-1 for none), values
+ *   internal page: byte 1, int valueCount, int unused, valueCount + 1 child
+ *     pages, values
+ */
+public class DiskBPlusTree<T extends Comparable<T>> implements IterableSortedCollection<T>, Closeable {
+
+    /**
+     * Turns values into bytes and back.
+     */
+    public interface Codec<T> {
+        /**
+         * @param value the value to measure
+         * @return the number of bytes that write puts into the buffer
+         */
+        int size(T value);
+
+        void write(T value, ByteBuffer buffer);
+
+        T read(ByteBuffer buffer);
+    }
+
+    /**
+     * Stores an Integer as 4 bytes.
+     */
+    public static final Codec<Integer> INTEGERS = new Codec<Integer>() {
+        public int size(Integer value) {
+            return 4;
+        }
+
+        public void write(Integer value, ByteBuffer buffer) {
+            buffer.putInt(value);
+        }
+
+        public Integer read(ByteBuffer buffer) {
+            return buffer.getInt();
+        }
+    };
+
+    /**
+     * Stores the title, artist, genre and int attributes of a Song. The ID
+     * and comparator of the song are not stored.
+     */
+    public static final Codec<Song> SONGS = new Codec<Song>() {
+        public int size(Song song) {
+            return stringSize(song.getTitle()) + stringSize(song.getArtist()) + stringSize(song.getGenres())
+                    + 4 * SongAttribute.values().length;
+        }
+
+        public void write(Song song, ByteBuffer buffer) {
+            writeString(song.getTitle(), buffer);
+            writeString(song.getArtist(), buffer);
+            writeString(song.getGenres(), buffer);
+            for (SongAttribute attribute : SongAttribute.values()) {
+                buffer.putInt(attribute.of(song));
+            }
+        }
+
+        public Song read(ByteBuffer buffer) {
+            String title = readString(buffer);
+            String artist = readString(buffer);
+            String genre = readString(buffer);
+            int[] values = new int[SongAttribute.values().length];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = buffer.getInt();
+            }
+            return new Song(title, artist, genre, values[SongAttribute.YEAR.ordinal()],
+                    values[SongAttribute.BPM.ordinal()], values[SongAttribute.ENERGY.ordinal()],
+                    values[SongAttribute.DANCEABILITY.ordinal()], values[SongAttribute.LOUDNESS.ordinal()],
+                    values[SongAttribute.LIVENESS.ordinal()]);
+        }
+    };
+
+    // Helper method to measure a string as an int length and UTF-8 bytes
+    private static int stringSize(String value) {
+        return 4 + (value == null ? 0 : value.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    // Helper method to write a string as an int length (-1 for null) and UTF-8 bytes
+    private static void writeString(String value, ByteBuffer buffer) {
+        if (value == null) {
+            buffer.putInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        buffer.putInt(bytes.length);
+        buffer.put(bytes);
+    }
+
+    // Helper method to read a string written by writeString
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static final int PAGE_SIZE = 4096;
+    public static final int MAX_VALUE_SIZE = PAGE_SIZE / 4;
+    public static final int MIN_POOL_PAGES = 16;
+
+    // "BPTR" in ASCII
+    private static final int MAGIC = 0x42505452;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 9;
+
+    /**
+     * A page of the tree, decoded.
+     */
+    private static class Node<T> {
+        private final boolean leaf;
+        private final List<T> values = new ArrayList<>();
+        // page numbers of the children, only used for internal nodes
+        private final List<Integer> children = new ArrayList<>();
+        // page number of the next leaf, only used for leaves
+        private int next = -1;
+        // number of bytes the node takes up when it is encoded
+        private int bytes = HEADER_SIZE;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+        }
+    }
+
+    private final FileChannel channel;
+    private final Codec<T> codec;
+    private final BufferPool<Node<T>> pool;
+    private int root;
+    private int size;
+    private int pageCount;
+
+    private Comparable<T> iteratorMin = null;
+    private Comparable<T> iteratorMax = null;
+
+    /**
+     * Opens the tree in a file with a pool of 256 pages that uses CLOCK.
+     *
+     * @param path  the file of the tree, which is created if it does not exist
+     * @param codec turns values into bytes
+     * @throws IOException when the file cannot be opened or is not a tree
+     */
+    public DiskBPlusTree(Path path, Codec<T> codec) throws IOException {
+        this(path, codec, 256, BufferPool.Policy.CLOCK);
+    }
+
+    /**
+     * Opens the tree in a file, or creates an empty tree when the file does
+     * not exist or is empty.
+     *
+     * @param path      the file of the tree
+     * @param codec     turns values into bytes; must be the same codec that
+     *                  wrote the file
+     * @param poolPages the number of pages to keep in memory, at least MIN_POOL_PAGES
+     * @param policy    how the pool chooses the page to evict
+     * @throws IOException              when the file cannot be opened or is not a tree
+     * @throws IllegalArgumentException if poolPages is less than MIN_POOL_PAGES
+     */
+    public DiskBPlusTree(Path path, Codec<T> codec, int poolPages, BufferPool.Policy policy)
+            throws IOException, IllegalArgumentException {
+        if (poolPages < MIN_POOL_PAGES) {
+            throw new IllegalArgumentException("pool must hold at least " + MIN_POOL_PAGES + " pages");
+        }
+        this.codec = codec;
+        this.pool = new BufferPool<>(poolPages, policy, new BufferPool.PageIO<Node<T>>() {
+            public Node<T> read(int pageId) throws IOException {
+                return decode(readPage(pageId));
+            }
+
+            public void write(int pageId, Node<T> node) throws IOException {
+                writePage(pageId, encode(node));
+            }
+        });
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        try {
+            if (channel.size() == 0) {
+                startEmpty();
+            } else {
+                ByteBuffer meta = readPage(0);
+                if (meta.getInt() != MAGIC) {
+                    throw new IOException("Not a B+tree file: " + path);
+                }
+                int version = meta.getInt();
+                if (version != VERSION) {
+                    throw new IOException("Unsupported B+tree version " + version + ": " + path);
+                }
+                root = meta.getInt();
+                size = meta.getInt();
+                pageCount = meta.getInt();
+                if (root <= 0 || root >= pageCount || size < 0 || (long) pageCount * PAGE_SIZE > channel.size()) {
+                    throw new IOException("Truncated or corrupt B+tree file: " + path);
+                }
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Helper method to write the meta page and an empty root leaf
+    private void startEmpty() throws IOException {
+        pool.clear();
+        channel.truncate(0);
+        pageCount = 1;
+        size = 0;
+        root = allocate(new Node<>(true));
+        flush();
+    }
+
+    // Helper method to give a new node the next page number and add it to the pool
+    private int allocate(Node<T> node) throws IOException {
+        int pageId = pageCount++;
+        pool.put(pageId, node);
+        return pageId;
+    }
+
+    // Helper method to read a whole page of the file
+    private ByteBuffer readPage(int pageId) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        long position = (long) pageId * PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Page " + pageId + " is past the end of the B+tree file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    // Helper method to write a whole page of the file
+    private void writePage(int pageId, ByteBuffer buffer) throws IOException {
+        long position = (long) pageId * PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    // Helper method to turn a node into the bytes of its page
+    private ByteBuffer encode(Node<T> node) {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        buffer.put((byte) (node.leaf ? 0 : 1));
+        buffer.putInt(node.values.size());
+        buffer.putInt(node.next);
+        for (int child : node.children) {
+            buffer.putInt(child);
+        }
+        for (T value : node.values) {
+            codec.write(value, buffer);
+        }
+        buffer.rewind();
+        return buffer;
+    }
+
+    // Helper method to turn the bytes of a page back into a node
+    private Node<T> decode(ByteBuffer buffer) {
+        Node<T> node = new Node<>(buffer.get() == 0);
+        int count = buffer.getInt();
+        node.next = buffer.getInt();
+        if (!node.leaf) {
+            for (int i = 0; i <= count; i++) {
+                node.children.add(buffer.getInt());
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            node.values.add(codec.read(buffer));
+        }
+        node.bytes = buffer.position();
+        return node;
+    }
+
+    // Helper method to look up the node of a page through the pool
+    private Node<T> node(int pageId) {
+        try {
+            return pool.get(pageId);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Inserts a new value into the tree, after any values equal to it.
+     *
+     * @param data the new value being inserted
+     * @throws NullPointerException     if data argument is null
+     * @throws IllegalArgumentException if the encoded value is larger than MAX_VALUE_SIZE
+     * @throws UncheckedIOException     when a page cannot be read or written
+     */
+    @Override
+    public void insert(T data) throws NullPointerException, IllegalArgumentException {
+        if (data == null) {
+            throw new NullPointerException("Cannot insert null into the tree");
+        }
+        int valueSize = codec.size(data);
+        if (valueSize > MAX_VALUE_SIZE) {
+            throw new IllegalArgumentException("value takes up " + valueSize + " bytes, at most "
+                    + MAX_VALUE_SIZE + " are allowed");
+        }
+
+        // pin the path from the root, so that no node on it is evicted before it is changed
+        List<Integer> pages = new ArrayList<>();
+        List<Node<T>> path = new ArrayList<>();
+        try {
+            int pageId = root;
+            while (true) {
+                Node<T> node = pool.get(pageId);
+                pool.pin(pageId);
+                pages.add(pageId);
+                path.add(node);
+                if (node.leaf) {
+                    break;
+                }
+                pageId = node.children.get(upperBound(node.values, data));
+            }
+
+            Node<T> leaf = path.get(path.size() - 1);
+            leaf.values.add(upperBound(leaf.values, data), data);
+            leaf.bytes += valueSize;
+
+            // split full nodes from the leaf upwards
+            T separator = null;
+            int rightPage = -1;
+            for (int level = path.size() - 1; level >= 0; level--) {
+                Node<T> node = path.get(level);
+                if (separator != null) {
+                    int index = upperBound(node.values, separator);
+                    node.values.add(index, separator);
+                    node.children.add(index + 1, rightPage);
+                    node.bytes += codec.size(separator) + 4;
+                }
+                pool.markDirty(pages.get(level));
+                if (node.bytes <= PAGE_SIZE) {
+                    separator = null;
+                    break;
+                }
+
+                Node<T> right = new Node<>(node.leaf);
+                separator = node.leaf ? splitLeaf(node, right) : splitInternal(node, right);
+                if (node.leaf) {
+                    right.next = node.next;
+                }
+                rightPage = allocate(right);
+                if (node.leaf) {
+                    node.next = rightPage;
+                }
+            }
+
+            if (separator != null) {
+                Node<T> newRoot = new Node<>(false);
+                newRoot.values.add(separator);
+                newRoot.children.add(root);
+                newRoot.children.add(rightPage);
+                newRoot.bytes += codec.size(separator) + 8;
+                root = allocate(newRoot);
+            }
+            size++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            for (int pageId : pages) {
+                pool.unpin(pageId);
+            }
+        }
+    }
+
+    // Helper method to move the upper half, by bytes, of a full leaf into
+    // right, returning the first value of right as the separator
+    private T splitLeaf(Node<T> leaf, Node<T> right) {
+        int split = splitIndex(leaf.values, 1, leaf.values.size() - 1);
+        List<T> moved = leaf.values.subList(split, leaf.values.size());
+        right.values.addAll(moved);
+        moved.clear();
+        leaf.bytes = measure(leaf);
+        right.bytes = measure(right);
+        return right.values.get(0);
+    }
+
+    // Helper method to move the upper half, by bytes, of a full internal node
+    // into right, returning the value between the halves as the separator
+    private T splitInternal(Node<T> node, Node<T> right) {
+        int middle = splitIndex(node.values, 1, node.values.size() - 2);
+        T separator = node.values.get(middle);
+
+        List<T> movedValues = node.values.subList(middle + 1, node.values.size());
+        right.values.addAll(movedValues);
+        movedValues.clear();
+        node.values.remove(middle);
+        List<Integer> movedChildren = node.children.subList(middle + 1, node.children.size());
+        right.children.addAll(movedChildren);
+        movedChildren.clear();
+
+        node.bytes = measure(node);
+        right.bytes = measure(right);
+        return separator;
+    }
+
+    // Helper method to find the index at which the values before it take up
+    // about half of the bytes, kept within [lowest, highest]
+    private int splitIndex(List<T> values, int lowest, int highest) {
+        int total = 0;
+        for (T value : values) {
+            total += codec.size(value);
+        }
+        int index = 0;
+        int before = 0;
+        while (index < values.size() && before < total / 2) {
+            before += codec.size(values.get(index));
+            index++;
+        }
+        return Math.max(lowest, Math.min(highest, index));
+    }
+
+    // Helper method to count the bytes a node takes up when it is encoded
+    private int measure(Node<T> node) {
+        int bytes = HEADER_SIZE + 4 * node.children.size();
+        for (T value : node.values) {
+            bytes += codec.size(value);
+        }
+        return bytes;
+    }
+
+    // Helper method to count the values that are at most key, which is the
+    // index of the child to descend into when inserting key
+    private static <T> int upperBound(List<T> values, Comparable<T> key) {
+        int low = 0;
+        int high = values.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key.compareTo(values.get(middle)) >= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Helper method to count the values that are less than key, which is the
+    // index of the child that holds the first value that is at least key
+    private static <T> int lowerBound(List<T> values, Comparable<T> key) {
+        int low = 0;
+        int high = values.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (key.compareTo(values.get(middle)) > 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A position in the chain of leaves: the page of a leaf and the index of
+     * a value within it.
+     */
+    private class Cursor {
+        private int page;
+        private Node<T> leaf;
+        private int index;
+
+        /**
+         * Places the cursor at the first value that is at least min.
+         */
+        Cursor(Comparable<T> min) {
+            page = root;
+            leaf = node(page);
+            while (!leaf.leaf) {
+                page = leaf.children.get(min == null ? 0 : lowerBound(leaf.values, min));
+                leaf = node(page);
+            }
+            index = min == null ? 0 : lowerBound(leaf.values, min);
+            skipExhausted();
+        }
+
+        // Helper method to move past the end of leaves that have no more values
+        private void skipExhausted() {
+            while (index >= leaf.values.size() && leaf.next != -1) {
+                page = leaf.next;
+                leaf = node(page);
+                index = 0;
+            }
+        }
+
+        /**
+         * @return the value at the cursor, or null past the last value
+         */
+        T value() {
+            return index < leaf.values.size() ? leaf.values.get(index) : null;
+        }
+
+        void advance() {
+            index++;
+            skipExhausted();
+        }
+
+        /**
+         * Removes the value at the cursor, leaving the cursor at the value after it.
+         */
+        void remove() {
+            T removed = leaf.values.remove(index);
+            leaf.bytes -= codec.size(removed);
+            pool.markDirty(page);
+            size--;
+            skipExhausted();
+        }
+    }
+
+    @Override
+    public boolean contains(Comparable<T> data) {
+        T value = new Cursor(data).value();
+        return value != null && data.compareTo(value) == 0;
+    }
+
+    /**
+     * Removes one occurrence of a value from the tree. Pages are not merged,
+     * so the file does not shrink.
+     *
+     * @param data the value to remove
+     * @return true if a value equal to data was found and removed
+     * @throws NullPointerException if data argument is null
+     * @throws UncheckedIOException when a page cannot be read or written
+     */
+    @Override
+    public boolean remove(Comparable<T> data) throws NullPointerException {
+        if (data == null) {
+            throw new NullPointerException("Cannot remove null from the tree");
+        }
+        Cursor cursor = new Cursor(data);
+        T value = cursor.value();
+        if (value == null || data.compareTo(value) != 0) {
+            return false;
+        }
+        cursor.remove();
+        return true;
+    }
+
+    @Override
+    public int removeRange(Comparable<T> min, Comparable<T> max) {
+        int removed = 0;
+        Cursor cursor = new Cursor(min);
+        for (T value = cursor.value(); value != null && (max == null || max.compareTo(value) >= 0);
+                value = cursor.value()) {
+            cursor.remove();
+            removed++;
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values and truncates the file to an empty tree.
+     *
+     * @throws UncheckedIOException when the file cannot be truncated
+     */
+    @Override
+    public void clear() {
+        try {
+            startEmpty();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void setIteratorMin(Comparable<T> min) {
+        this.iteratorMin = min;
+    }
+
+    @Override
+    public void setIteratorMax(Comparable<T> max) {
+        this.iteratorMax = max;
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return iterator(iteratorMin, iteratorMax);
+    }
+
+    /**
+     * Returns an iterator that walks along the leaves from the first value
+     * that is at least min. Leaves are looked up through the pool as the
+     * iterator reaches them.
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max) {
+        Cursor cursor = new Cursor(min);
+        return new Iterator<T>() {
+            public boolean hasNext() {
+                T value = cursor.value();
+                return value != null && (max == null || max.compareTo(value) >= 0);
+            }
+
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more values in range");
+                }
+                T value = cursor.value();
+                cursor.advance();
+                return value;
+            }
+        };
+    }
+
+    /**
+     * Writes every changed page and the meta page to the file.
+     *
+     * @throws IOException when the file cannot be written
+     */
+    public void flush() throws IOException {
+        pool.flush();
+        ByteBuffer meta = ByteBuffer.allocate(PAGE_SIZE);
+        meta.putInt(MAGIC).putInt(VERSION).putInt(root).putInt(size).putInt(pageCount);
+        meta.rewind();
+        writePage(0, meta);
+    }
+
+    /**
+     * Flushes the tree and closes its file.
+     *
+     * @throws IOException when the file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return the number of pages in the file, including the meta page
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * @return the number of page lookups that were answered by the pool
+     */
+    public long getPageHits() {
+        return pool.getHits();
+    }
+
+    /**
+     * @return the number of page lookups that had to read the file
+     */
+    public long getPageMisses() {
+        return pool.getMisses();
+    }
+
+    /**
+     * @return the fraction of page lookups that were answered by the pool
+     */
+    public double getHitRate() {
+        return pool.getHitRate();
+    }
+}
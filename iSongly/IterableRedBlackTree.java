@@ -1,3 +1,5 @@
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Iterator;
 import java.util.Stack;
 import java.util.NoSuchElementException;
@@ -57,11 +59,121 @@ public class IterableRedBlackTree<T extends Comparable<T>>
      * maximum
      * value and finishes with the highest value that exists in the tree.
      */
-    @SuppressWarnings({ "rawtypes", "unchecked" })
     public Iterator<T> iterator() {
-        return new RBTIterator(this.root, iteratorMin, iteratorMax); // create new instance of RBTIterator class by
-                                                                     // passing
-        // iterator max and min values
+        return iterator(iteratorMin, iteratorMax); // use the bounds stored in this tree
+    }
+
+    /**
+     * Returns an iterator over the values from min to max (inclusive). The
+     * bounds belong to the returned iterator alone, so they are not affected
+     * by setIteratorMin, setIteratorMax or other iterators. The iterator
+     * steps through in-order successors using parent references (see
+     * SuccessorIterator).
+     * 
+     * @param min the minimum value the iterator returns, or null for no minimum
+     * @param max the maximum value the iterator returns, or null for no maximum
+     */
+    @Override
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max) {
+        return new SuccessorIterator<T>(this.root, min, max);
+    }
+
+    /**
+     * Inserts all of the values in a collection. The values are sorted and
+     * merged with the values already in the tree, and then the whole tree is
+     * rebuilt with buildFromSorted. This takes O(n log n) comparisons to sort
+     * the new values, but needs no rotations or recoloring.
+     * 
+     * @param values the new values being inserted
+     * @throws NullPointerException if values or any value in it is null
+     */
+    @Override
+    public void bulkLoad(Collection<T> values) throws NullPointerException {
+        @SuppressWarnings("unchecked")
+        T[] added = (T[]) values.toArray(new Comparable<?>[0]);
+        for (T value : added) {
+            if (value == null) {
+                throw new NullPointerException("Null data argument");
+            }
+        }
+        Arrays.sort(added);
+
+        if (root == null) {
+            buildFromSorted(added);
+            return;
+        }
+
+        // merge the new values with the values already in the tree
+        @SuppressWarnings("unchecked")
+        T[] merged = (T[]) new Comparable<?>[size() + added.length];
+        Iterator<T> existing = new SuccessorIterator<T>(root, null, null);
+        T next = existing.hasNext() ? existing.next() : null;
+        int i = 0;
+        int m = 0;
+        while (next != null || i < added.length) {
+            if (next != null && (i == added.length || next.compareTo(added[i]) <= 0)) {
+                merged[m++] = next;
+                next = existing.hasNext() ? existing.next() : null;
+            } else {
+                merged[m++] = added[i++];
+            }
+        }
+
+        buildFromSorted(merged);
+    }
+
+    /**
+     * Replaces the contents of this tree with the values of an array sorted in
+     * ascending order, in O(n) time. The middle value of each range becomes the
+     * root of the subtree built from that range, so the tree has minimal
+     * height and every missing child is on one of its last two levels. All
+     * nodes are black except for those on the deepest level, which are red,
+     * so every path from the root to a missing child has the same number of
+     * black nodes.
+     * 
+     * @param values the values to store, in ascending order
+     * @throws NullPointerException     if values or any value in it is null
+     * @throws IllegalArgumentException if values is not sorted
+     */
+    public void buildFromSorted(T[] values) throws NullPointerException, IllegalArgumentException {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == null) {
+                throw new NullPointerException("Null data argument");
+            }
+            if (i > 0 && values[i - 1].compareTo(values[i]) > 0) {
+                throw new IllegalArgumentException("values are not sorted at index " + i);
+            }
+        }
+
+        // nodes at the depth of the deepest level are red, unless that is the root
+        int redDepth = values.length > 1 ? 31 - Integer.numberOfLeadingZeros(values.length) : -1;
+        root = buildHelper(values, 0, values.length - 1, 0, redDepth);
+    }
+
+    /**
+     * Recursive helper method that builds the subtree holding values from low to
+     * high (inclusive), and returns its root node.
+     */
+    private RBTNode<T> buildHelper(T[] values, int low, int high, int depth, int redDepth) {
+        if (low > high) {
+            return null;
+        }
+
+        int middle = (low + high) >>> 1;
+        RBTNode<T> node = new RBTNode<>(values[middle]);
+        node.isRed = depth == redDepth;
+
+        node.setLeft(buildHelper(values, low, middle - 1, depth + 1, redDepth));
+        if (node.getLeft() != null) {
+            node.getLeft().setUp(node);
+        }
+        node.setRight(buildHelper(values, middle + 1, high, depth + 1, redDepth));
+        if (node.getRight() != null) {
+            node.getRight().setUp(node);
+        }
+        node.updateSubtreeSize();
+
+        return node;
     }
 
     /**
@@ -162,6 +274,94 @@ public class IterableRedBlackTree<T extends Comparable<T>>
         }
     }
 
+    /**
+     * Nested class for Iterator objects that walk the tree through parent
+     * references instead of keeping a stack. The first value that is at least
+     * min is found once with O(log n) comparisons; after that each call to
+     * next moves to the in-order successor of the current node. This needs no
+     * extra memory beyond the current node, no recursion and no locking.
+     */
+    protected static class SuccessorIterator<R> implements Iterator<R> {
+
+        // stores the stop point (maximum) for the iterator
+        private final Comparable<R> max;
+        // the node holding the value that next will return, or null when done
+        private BSTNode<R> nextNode;
+
+        /**
+         * Constructor for a new iterator over the tree with root as its root
+         * node, returning the values from min to max.
+         * 
+         * @param root root node of the tree to traverse
+         * @param min  the minimum value that the iterator will return
+         * @param max  the maximum value that the iterator will return
+         */
+        public SuccessorIterator(BSTNode<R> root, Comparable<R> min, Comparable<R> max) {
+            this.max = max;
+
+            // find the node with the smallest value that is at least min
+            BSTNode<R> curr = root;
+            while (curr != null) {
+                if (min == null || min.compareTo(curr.getData()) <= 0) {
+                    nextNode = curr;
+                    curr = curr.getLeft();
+                } else {
+                    curr = curr.getRight();
+                }
+            }
+            checkMax();
+        }
+
+        /**
+         * Clears nextNode when its value is beyond the stop point, since every
+         * later value is too.
+         */
+        private void checkMax() {
+            if (nextNode != null && max != null && max.compareTo(nextNode.getData()) < 0) {
+                nextNode = null;
+            }
+        }
+
+        /**
+         * Returns true if the iterator has another value to return, and false
+         * otherwise.
+         */
+        public boolean hasNext() {
+            return nextNode != null;
+        }
+
+        /**
+         * Returns the next value of the iterator.
+         * 
+         * @throws NoSuchElementException if the iterator has no more values to return
+         */
+        public R next() {
+            if (nextNode == null) {
+                throw new NoSuchElementException(
+                        "no more nodes to visit with values smaller than or equal to the set stop point (maximum).");
+            }
+
+            R nextValue = nextNode.getData();
+
+            if (nextNode.getRight() != null) {
+                // the successor is the left-most node of the right subtree
+                nextNode = nextNode.getRight();
+                while (nextNode.getLeft() != null) {
+                    nextNode = nextNode.getLeft();
+                }
+            } else {
+                // the successor is the first ancestor reached from its left subtree
+                while (nextNode.isRightChild()) {
+                    nextNode = nextNode.getUp();
+                }
+                nextNode = nextNode.getUp();
+            }
+            checkMax();
+
+            return nextValue;
+        }
+    }
+
     /**
      * Tests iterator with no start or stop points specified.
      */
@@ -270,4 +470,111 @@ public class IterableRedBlackTree<T extends Comparable<T>>
         // Ensure the iterator has no more elements
         assertFalse(iterator.hasNext());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that buildFromSorted creates valid red-black trees of many sizes
+     * that hold all values in order.
+     */
+    @Test
+    public void buildFromSortedIsValid() {
+        for (int n = 0; n <= 70; n++) {
+            Integer[] values = new Integer[n];
+            for (int i = 0; i < n; i++) {
+                values[i] = i * 2;
+            }
+
+            IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+            tree.buildFromSorted(values);
+
+            assertEquals(n, tree.size());
+            if (n > 0) {
+                assertFalse(((RBTNode<Integer>) tree.root).isRed(), "Root should be black.");
+                assertNull(tree.root.getUp());
+            }
+            assertTrue(blackHeight((RBTNode<Integer>) tree.root) >= 0, "Invalid tree of size " + n);
+
+            Iterator<Integer> iterator = tree.iterator();
+            for (int i = 0; i < n; i++) {
+                assertEquals(i * 2, iterator.next());
+            }
+            assertFalse(iterator.hasNext());
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new IterableRedBlackTree<Integer>().buildFromSorted(new Integer[] { 2, 1 }));
+    }
+
+    /**
+     * Tests that bulkLoad sorts new values and merges them with the values
+     * already stored in the tree, including duplicates.
+     */
+    @Test
+    public void bulkLoadMerges() {
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        tree.bulkLoad(Arrays.asList(30, 10, 20));
+        tree.bulkLoad(Arrays.asList(25, 5, 20, 40));
+
+        assertEquals("[ 5(r), 10(b), 20(r), 20(b), 25(r), 30(b), 40(r) ]", tree.root.toInOrderString());
+        assertTrue(blackHeight((RBTNode<Integer>) tree.root) >= 0);
+        assertTrue(tree.contains(25));
+        assertFalse(tree.contains(15));
+    }
+
+    /**
+     * Tests that iterators with their own bounds can be used at the same time
+     * without affecting each other or the bounds stored in the tree.
+     */
+    @Test
+    public void iteratorWithOwnBounds() {
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        for (int i = 1; i <= 10; i++) {
+            tree.insert(i * 5);
+        }
+        tree.setIteratorMin(40);
+
+        Iterator<Integer> low = tree.iterator(null, 15);
+        Iterator<Integer> high = tree.iterator(35, 45);
+
+        assertEquals(5, low.next());
+        assertEquals(35, high.next());
+        assertEquals(10, low.next());
+        assertEquals(40, high.next());
+        assertEquals(15, low.next());
+        assertEquals(45, high.next());
+        assertFalse(low.hasNext());
+        assertFalse(high.hasNext());
+
+        // the stored minimum is still used by iterator()
+        assertEquals(40, tree.iterator().next());
+
+        java.util.List<Integer> visited = new java.util.ArrayList<>();
+        tree.forEachInRange(22, 31, visited::add);
+        assertEquals(java.util.Arrays.asList(25, 30), visited);
+    }
+
+    /**
+     * Tests that the successor-based iterator returns the same values as the
+     * stack-based iterator for trees built by insertion, with and without
+     * bounds and with duplicate values.
+     */
+    @Test
+    public void successorIteratorMatchesStackIterator() {
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        java.util.Random random = new java.util.Random(700);
+        for (int i = 0; i < 300; i++) {
+            tree.insert(random.nextInt(100));
+        }
+
+        Integer[][] bounds = { { null, null }, { 10, 20 }, { null, 50 }, { 90, null }, { 40, 30 }, { 200, null } };
+        for (Integer[] bound : bounds) {
+            Iterator<Integer> expected = new RBTIterator<Integer>(tree.root, bound[0], bound[1]);
+            Iterator<Integer> actual = new SuccessorIterator<Integer>(tree.root, bound[0], bound[1]);
+            while (expected.hasNext()) {
+                assertTrue(actual.hasNext());
+                assertEquals(expected.next(), actual.next());
+            }
+            assertFalse(actual.hasNext());
+        }
+        assertThrows(NoSuchElementException.class, () -> new SuccessorIterator<Integer>(null, null, null).next());
+    }
+}
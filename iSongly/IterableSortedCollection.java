@@ -1,3 +1,7 @@
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Consumer;
+
 /**
  * This interface defines an ADT for data structures that support storing a 
  * collection of comparable values in their natural ordering (similar to the
@@ -8,6 +12,57 @@ public interface IterableSortedCollection<T extends Comparable<T>>
 
     public void setIteratorMin(Comparable<T> min); // null to clear min
     public void setIteratorMax(Comparable<T> max); // null to clear max
-    
-    
+
+    /**
+     * Returns an iterator over the values from min to max (inclusive), in
+     * ascending order. Unlike setIteratorMin and setIteratorMax, the bounds
+     * only apply to the returned iterator, so several iterators with
+     * different bounds can be used at the same time, even from different
+     * threads while the collection is not being modified.
+     * @param min the smallest value to return, or null for no minimum
+     * @param max the largest value to return, or null for no maximum
+     * @return an iterator over the values in that range
+     */
+    public Iterator<T> iterator(Comparable<T> min, Comparable<T> max);
+
+    /**
+     * Passes every value from min to max (inclusive) to action, in ascending
+     * order, without using the bounds set by setIteratorMin/setIteratorMax.
+     * @param min the smallest value to visit, or null for no minimum
+     * @param max the largest value to visit, or null for no maximum
+     * @param action is called with each value in that range
+     */
+    public default void forEachInRange(Comparable<T> min, Comparable<T> max, Consumer<? super T> action) {
+        iterator(min, max).forEachRemaining(action);
+    }
+
+    /**
+     * Removes one occurrence of a value from the collection.
+     * @param data the value to remove
+     * @return true if a value equal to data was found and removed
+     * @throws NullPointerException if data argument is null
+     */
+    public boolean remove(Comparable<T> data) throws NullPointerException;
+
+    /**
+     * Removes every value from min to max, inclusive, from the collection.
+     * @param min the smallest value to remove, or null for no minimum
+     * @param max the largest value to remove, or null for no maximum
+     * @return the number of values that were removed
+     */
+    public int removeRange(Comparable<T> min, Comparable<T> max);
+
+    /**
+     * Inserts all of the values in a collection. Implementations that can
+     * build their structure faster from many values at once than through
+     * repeated calls to insert should override this method.
+     * @param values the new values being inserted
+     * @throws NullPointerException if values or any value in it is null
+     */
+    public default void bulkLoad(Collection<T> values) throws NullPointerException {
+        for (T value : values) {
+            insert(value);
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,69 @@
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * This class compares the stack-based RBTIterator with the successor-based
+ * SuccessorIterator of IterableRedBlackTree, for full scans of the tree and
+ * for many short range scans.
+ *
+ * Usage: java IteratorBenchmark [size] [rounds]
+ */
+public class IteratorBenchmark {
+
+    /**
+     * Creates an iterator over a tree, matching the constructors of the two
+     * iterator classes.
+     */
+    private interface IteratorFactory {
+        Iterator<Integer> create(BSTNode<Integer> root, Comparable<Integer> min, Comparable<Integer> max);
+    }
+
+    /**
+     * Main method to build the tree and print the results
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Integer[] values = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = i;
+        }
+        IterableRedBlackTree<Integer> tree = new IterableRedBlackTree<>();
+        tree.buildFromSorted(values);
+
+        for (int round = 0; round < rounds; round++) {
+            System.out.println("Round " + (round + 1));
+            run("RBTIterator", IterableRedBlackTree.RBTIterator::new, tree.root, size);
+            run("SuccessorIterator", IterableRedBlackTree.SuccessorIterator::new, tree.root, size);
+        }
+    }
+
+    /**
+     * Runs one full scan and 100,000 range scans of 50 values with iterators
+     * created by factory, and prints how long each took.
+     */
+    private static void run(String name, IteratorFactory factory, BSTNode<Integer> root, int size) {
+        long start = System.nanoTime();
+        long sum = 0;
+        Iterator<Integer> full = factory.create(root, null, null);
+        while (full.hasNext()) {
+            sum += full.next();
+        }
+        long fullNanos = System.nanoTime() - start;
+
+        Random random = new Random(7);
+        start = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) {
+            int min = random.nextInt(Math.max(1, size - 50));
+            Iterator<Integer> range = factory.create(root, min, min + 49);
+            while (range.hasNext()) {
+                sum += range.next();
+            }
+        }
+        long rangeNanos = System.nanoTime() - start;
+
+        System.out.printf("  %-18s full scan %8.2f ms   range scans %8.2f ms   (checksum %d)%n", name,
+                fullNanos / 1e6, rangeNanos / 1e6, sum);
+    }
+}
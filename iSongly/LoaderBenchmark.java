@@ -0,0 +1,157 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class compares the throughput and allocation rate of the different
+ * ways Backend can load a csv file. It generates a large file by repeating the
+ * rows of songs.csv, then loads it several times with each loader. The
+ * Backend loaders fill a Tree_Placeholder (which only remembers the last
+ * song), so tree insertion is cheap, but they still include the work Backend
+ * does for every song: sharing its strings, adding it to the song table, and
+ * rebuilding the indexes once the load is done. The MappedSongReader loaders
+ * parse the same file without a Backend, so they measure parsing alone. Bytes
+ * per row are only measured on the calling thread, so they do not include the
+ * allocations made by the worker threads of readDataParallel and
+ * parseParallel.
+ *
+ * Usage: java LoaderBenchmark [rows] [rounds]
+ */
+public class LoaderBenchmark {
+
+    /**
+     * Loads or parses a file.
+     */
+    private interface Loader {
+        void load(String filename) throws IOException;
+    }
+
+    /**
+     * Main method to generate the input file and print the results
+     */
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        String filename = generateFile("songs.csv", rows);
+        System.out.println("Generated " + rows + " rows in " + filename);
+
+        run("readData", file -> new Backend(new Tree_Placeholder()).readData(file), filename, rows, rounds);
+        run("readDataMapped", file -> new Backend(new Tree_Placeholder()).readDataMapped(file),
+                filename, rows, rounds);
+        run("readDataParallel", file -> new Backend(new Tree_Placeholder()).readDataParallel(file),
+                filename, rows, rounds);
+        run("forEachSong", LoaderBenchmark::forEachSong, filename, rows, rounds);
+        run("parseParallel", LoaderBenchmark::parseParallel, filename, rows, rounds);
+    }
+
+    /**
+     * Parses every song of filename with MappedSongReader.forEachSong,
+     * dropping each song once it is parsed.
+     */
+    private static void forEachSong(String filename) throws IOException {
+        try (MappedSongReader reader = new MappedSongReader(filename)) {
+            int[] count = new int[1];
+            reader.forEachSong(headerMap(reader.readHeaderLine()), song -> count[0]++);
+        }
+    }
+
+    /**
+     * Parses every song of filename with MappedSongReader.parseParallel on the
+     * common ForkJoinPool.
+     */
+    private static void parseParallel(String filename) throws IOException {
+        try (MappedSongReader reader = new MappedSongReader(filename)) {
+            reader.parseParallel(headerMap(reader.readHeaderLine()), ForkJoinPool.commonPool());
+        }
+    }
+
+    /**
+     * Maps each column name of a header line to its index, as Backend does.
+     */
+    private static Map<String, Integer> headerMap(String headerLine) {
+        String[] headers = headerLine.split(",");
+        Map<String, Integer> headerMap = new HashMap<>();
+        for (int i = 0; i < headers.length; i++) {
+            headerMap.put(headers[i], i);
+        }
+        return headerMap;
+    }
+
+    /**
+     * Writes a csv file with the header of source followed by rows songs,
+     * repeating the songs of source with a counter appended to each title.
+     *
+     * @return the name of the generated file
+     */
+    private static String generateFile(String source, int rows) throws IOException {
+        List<String> lines = new ArrayList<>();
+        String header;
+        try (BufferedReader reader = new BufferedReader(new FileReader(source))) {
+            header = reader.readLine();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+
+        String filename = "benchmark_songs_" + rows + ".csv";
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(filename))) {
+            writer.write(header);
+            writer.newLine();
+            for (int i = 0; i < rows; i++) {
+                String line = lines.get(i % lines.size());
+                // keep quoted titles quoted by inserting the counter before the first comma
+                int firstComma = line.startsWith("\"") ? line.indexOf("\",") + 1 : line.indexOf(',');
+                String title = line.substring(0, firstComma);
+                if (title.endsWith("\"")) {
+                    title = title.substring(0, title.length() - 1) + " " + i + "\"";
+                } else {
+                    title = title + " " + i;
+                }
+                writer.write(title);
+                writer.write(line, firstComma, line.length() - firstComma);
+                writer.newLine();
+            }
+        }
+        return filename;
+    }
+
+    /**
+     * Loads filename rounds times with loader, after one warm-up round, and
+     * prints the rows per second and bytes allocated per row of the best round.
+     */
+    private static void run(String name, Loader loader, String filename, int rows, int rounds)
+            throws IOException {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        loader.load(filename);
+
+        long bestNanos = Long.MAX_VALUE;
+        long bestBytes = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            long bytesBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+
+            loader.load(filename);
+
+            long nanos = System.nanoTime() - start;
+            long bytes = threads.getThreadAllocatedBytes(threadId) - bytesBefore;
+            bestNanos = Math.min(bestNanos, nanos);
+            bestBytes = Math.min(bestBytes, bytes);
+        }
+
+        System.out.printf("%-18s %,12.0f rows/sec %,10.1f bytes/row%n", name,
+                rows / (bestNanos / 1e9), (double) bestBytes / rows);
+    }
+}
@@ -0,0 +1,339 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * This class is a read-only sorted collection of songs that are kept in a
+ * memory-mapped file instead of on the heap. The file holds one fixed-width
+ * record per song, in sorted order, followed by a region with every distinct
+ * string. A record holds the six int attributes of its song and the offsets of
+ * its title, artist and genre within the string region. Opening a catalog
+ * only maps the file, and Song objects are only created for the songs that a
+ * lookup or iterator returns, so the catalog can be larger than the heap.
+ *
+ * Lookups binary search the records, creating the Song of each record that
+ * they compare against, so any Comparable can be used as a bound. Filters run
+ * with forEachMatching, which checks the records and only creates the Songs
+ * that match. Each of the record and string regions can be at most 2GB,
+ * which is about 59 million songs. The collection cannot be changed: insert,
+ * remove, removeRange, bulkLoad and clear throw an
+ * UnsupportedOperationException.
+ *
+ * Layout (all ints are 4 byte big-endian):
+ *   int magic, int version, int songCount, int stringRegionSize
+ *   songCount records of: int titleOffset, int artistOffset, int genreOffset,
+ *     int year, int bpm, int energy, int danceability, int loudness, int liveness
+ *   string region of: int byteLength, UTF-8 bytes (offset -1 stands for null)
+ */
+public class MappedSongCatalog implements IterableSortedCollection<Song> {
+
+    // "SNGC" in ASCII
+    private static final int MAGIC = 0x534E4743;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 36;
+
+    // the int attributes, in the order they are stored after the string offsets
+    private static final SongAttribute[] COLUMNS = { SongAttribute.YEAR, SongAttribute.BPM,
+            SongAttribute.ENERGY, SongAttribute.DANCEABILITY, SongAttribute.LOUDNESS, SongAttribute.LIVENESS };
+
+    private final ByteBuffer records;
+    private final ByteBuffer strings;
+    private final int size;
+
+    private Comparable<Song> min = null;
+    private Comparable<Song> max = null;
+
+    /**
+     * Opens a catalog file written by write, mapping it into memory.
+     *
+     * @param path the catalog file to open
+     * @throws IOException when the file cannot be read, is not a catalog or
+     *                     is truncated
+     */
+    public MappedSongCatalog(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_SIZE) {
+                throw new IOException("Not a song catalog: " + path);
+            }
+
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a song catalog: " + path);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported catalog version " + header.getInt(4) + ": " + path);
+            }
+            this.size = header.getInt(8);
+            int stringRegionSize = header.getInt(12);
+
+            long recordRegionSize = (long) size * RECORD_SIZE;
+            if (size < 0 || stringRegionSize < 0
+                    || HEADER_SIZE + recordRegionSize + stringRegionSize != fileSize) {
+                throw new IOException("Truncated or corrupt song catalog: " + path);
+            }
+            if (recordRegionSize > Integer.MAX_VALUE) {
+                throw new IOException("Song catalog has too many songs: " + path);
+            }
+
+            this.records = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, recordRegionSize);
+            this.strings = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + recordRegionSize,
+                    stringRegionSize);
+        }
+    }
+
+    /**
+     * Writes songs to a catalog file, replacing the file if it exists. Equal
+     * strings are only written once.
+     *
+     * @param path  the file to write
+     * @param songs the songs to write, in ascending order, e.g. a tree; they
+     *              are iterated over twice
+     * @throws IOException              when the file cannot be written
+     * @throws IllegalArgumentException if the songs are not in ascending order
+     */
+    public static void write(Path path, Iterable<Song> songs) throws IOException, IllegalArgumentException {
+        // lay out the string region, and check the order of the songs
+        Map<String, Integer> offsets = new HashMap<>();
+        List<String> distinct = new ArrayList<>();
+        int stringRegionSize = 0;
+        int count = 0;
+        Song previous = null;
+        for (Song song : songs) {
+            if (previous != null && previous.compareTo(song) > 0) {
+                throw new IllegalArgumentException("songs are not sorted at index " + count);
+            }
+            for (String value : new String[] { song.getTitle(), song.getArtist(), song.getGenres() }) {
+                if (value != null && !offsets.containsKey(value)) {
+                    offsets.put(value, stringRegionSize);
+                    distinct.add(value);
+                    long newSize = stringRegionSize + 4L + value.getBytes(StandardCharsets.UTF_8).length;
+                    if (newSize > Integer.MAX_VALUE) {
+                        throw new IOException("Strings of the songs are larger than 2GB");
+                    }
+                    stringRegionSize = (int) newSize;
+                }
+            }
+            previous = song;
+            count++;
+        }
+
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(stringRegionSize);
+
+            for (Song song : songs) {
+                out.writeInt(offset(offsets, song.getTitle()));
+                out.writeInt(offset(offsets, song.getArtist()));
+                out.writeInt(offset(offsets, song.getGenres()));
+                for (SongAttribute attribute : COLUMNS) {
+                    out.writeInt(attribute.of(song));
+                }
+            }
+
+            for (String value : distinct) {
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+        }
+    }
+
+    // Helper method to look up the offset of a string, or -1 for null
+    private static int offset(Map<String, Integer> offsets, String value) {
+        return value == null ? -1 : offsets.get(value);
+    }
+
+    /**
+     * Creates the Song of the record at an index.
+     *
+     * @param index the position of the song in sorted order
+     * @return a new Song with the values of that record
+     * @throws IndexOutOfBoundsException if index is not within [0, size())
+     */
+    public Song get(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        int record = index * RECORD_SIZE;
+        return new Song(string(records.getInt(record)), string(records.getInt(record + 4)),
+                string(records.getInt(record + 8)), records.getInt(record + 12), records.getInt(record + 16),
+                records.getInt(record + 20), records.getInt(record + 24), records.getInt(record + 28),
+                records.getInt(record + 32));
+    }
+
+    // Helper method to decode the string at an offset of the string region
+    private String string(int offset) {
+        if (offset == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[strings.getInt(offset)];
+        strings.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Passes the song of every record that satisfies all predicates of query
+     * to action, in sorted order. The int attributes are compared within the
+     * records, and the artist and genre against the bytes of the string
+     * region, so a Song is only created for each matching record.
+     *
+     * @param query  the query whose predicates are checked; its order and
+     *               limit are ignored
+     * @param action is called with the song of each matching record
+     */
+    public void forEachMatching(Query query, Consumer<Song> action) {
+        Map<SongAttribute, Query.Range> predicates = query.getPredicates();
+        int[] positions = new int[predicates.size()];
+        Query.Range[] ranges = new Query.Range[predicates.size()];
+        int count = 0;
+        for (int column = 0; column < COLUMNS.length; column++) {
+            Query.Range range = predicates.get(COLUMNS[column]);
+            if (range != null) {
+                positions[count] = 12 + 4 * column;
+                ranges[count] = range;
+                count++;
+            }
+        }
+        byte[] artist = query.getArtist() == null ? null : query.getArtist().getBytes(StandardCharsets.UTF_8);
+        byte[] genre = query.getGenre() == null ? null : query.getGenre().getBytes(StandardCharsets.UTF_8);
+
+        for (int index = 0; index < size; index++) {
+            int record = index * RECORD_SIZE;
+            boolean matches = (artist == null || stringEquals(records.getInt(record + 4), artist))
+                    && (genre == null || stringEquals(records.getInt(record + 8), genre));
+            for (int i = 0; matches && i < count; i++) {
+                matches = ranges[i].contains(records.getInt(record + positions[i]));
+            }
+            if (matches) {
+                action.accept(get(index));
+            }
+        }
+    }
+
+    // Helper method to compare the string at an offset of the string region
+    // with the UTF-8 bytes of a string, without decoding it
+    private boolean stringEquals(int offset, byte[] bytes) {
+        if (offset == -1 || strings.getInt(offset) != bytes.length) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (strings.get(offset + 4 + i) != bytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Helper method to find the index of the first song that is at least
+    // bound (when inclusive) or greater than bound (otherwise), or size when
+    // there is none
+    private int lowerBound(Comparable<Song> bound, boolean inclusive) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = bound.compareTo(get(middle));
+            if (comparison > 0 || (!inclusive && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public boolean contains(Comparable<Song> data) {
+        int index = lowerBound(data, true);
+        return index < size && data.compareTo(get(index)) == 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void setIteratorMin(Comparable<Song> min) {
+        this.min = min;
+    }
+
+    @Override
+    public void setIteratorMax(Comparable<Song> max) {
+        this.max = max;
+    }
+
+    @Override
+    public Iterator<Song> iterator() {
+        return iterator(min, max);
+    }
+
+    @Override
+    public Iterator<Song> iterator(Comparable<Song> min, Comparable<Song> max) {
+        int from = min == null ? 0 : lowerBound(min, true);
+        int to = max == null ? size : lowerBound(max, false);
+        return new Iterator<Song>() {
+            private int next = from;
+
+            public boolean hasNext() {
+                return next < to;
+            }
+
+            public Song next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException("No more songs in range");
+                }
+                return get(next++);
+            }
+        };
+    }
+
+    @Override
+    public void insert(Song data) throws NullPointerException {
+        throw new UnsupportedOperationException("catalog is read-only");
+    }
+
+    @Override
+    public boolean remove(Comparable<Song> data) {
+        throw new UnsupportedOperationException("catalog is read-only");
+    }
+
+    @Override
+    public int removeRange(Comparable<Song> min, Comparable<Song> max) {
+        throw new UnsupportedOperationException("catalog is read-only");
+    }
+
+    @Override
+    public void bulkLoad(Collection<Song> values) {
+        throw new UnsupportedOperationException("catalog is read-only");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("catalog is read-only");
+    }
+}
@@ -0,0 +1,330 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * This class reads songs from a csv file by memory-mapping it and handing the
+ * mapped bytes to a SongRecordParser, instead of reading and splitting it one
+ * line at a time. Files larger than a single mapping are read through a
+ * sequence of windows that always start at a record boundary.
+ *
+ * Because a record always ends at a newline (see SongRecordParser), the file
+ * can also be cut into chunks at newlines and parsed in parallel.
+ */
+public class MappedSongReader implements Closeable {
+
+    // largest number of bytes that are mapped at one time
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+    // smallest chunk that is worth parsing as a separate task
+    private static final int MIN_CHUNK_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long fileSize;
+    // offset of the first byte after the header line
+    private long dataStart = 0;
+
+    /**
+     * Opens the file with the given name for reading.
+     *
+     * @param filename is the name of the csv file to read
+     * @throws IOException when there is trouble finding/opening the file
+     */
+    public MappedSongReader(String filename) throws IOException {
+        this.channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+        this.fileSize = channel.size();
+    }
+
+    /**
+     * Reads the header line at the start of the file. This must be called
+     * before forEachSong so that the header is not parsed as a song.
+     *
+     * @return the header line, without its line terminator
+     * @throws IOException when the file is empty or cannot be read
+     */
+    public String readHeaderLine() throws IOException {
+        if (fileSize == 0) {
+            throw new IOException("File has no header line");
+        }
+
+        int length = (int) Math.min(WINDOW_SIZE, fileSize);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+
+        int end = 0;
+        while (end < length && buffer.get(end) != '\n') {
+            end++;
+        }
+        if (end == length && length < fileSize) {
+            throw new IOException("Header line longer than " + WINDOW_SIZE + " bytes");
+        }
+        dataStart = Math.min(end + 1, fileSize);
+
+        int textEnd = (end > 0 && buffer.get(end - 1) == '\r') ? end - 1 : end;
+        byte[] header = new byte[textEnd];
+        buffer.get(0, header);
+        return new String(header, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parses every song after the header line and passes it to action, in the
+     * order the songs appear in the file.
+     *
+     * @param headerMap maps each column name to its index within a record
+     * @param action    receives each song
+     * @throws IOException when there is trouble reading the file or a record
+     *                     is malformed
+     */
+    public void forEachSong(Map<String, Integer> headerMap, Consumer<Song> action) throws IOException {
+        SongRecordParser parser = new SongRecordParser(headerMap);
+        long position = dataStart;
+
+        while (position < fileSize) {
+            int length = (int) Math.min(WINDOW_SIZE, fileSize - position);
+            boolean lastWindow = position + length == fileSize;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+            int consumed = parser.parseRecords(buffer, 0, length, lastWindow, action);
+            if (consumed == 0 && !lastWindow) {
+                throw new IOException("Song record longer than " + WINDOW_SIZE + " bytes");
+            }
+            position += consumed;
+        }
+    }
+
+    /**
+     * Parses every song after the header line on pool. The file is cut into
+     * about four chunks per thread of the pool, each ending at a newline, and
+     * each chunk is mapped and parsed by its own task.
+     *
+     * @param headerMap maps each column name to its index within a record
+     * @param pool      runs the parsing tasks
+     * @return the songs, in the order they appear in the file
+     * @throws IOException when there is trouble reading the file or a record
+     *                     is malformed
+     */
+    public List<Song> parseParallel(Map<String, Integer> headerMap, ForkJoinPool pool) throws IOException {
+        return parseParallel(headerMap, pool, chunkSize(pool));
+    }
+
+    /**
+     * Parses every song after the header line on pool, cutting the file into
+     * chunks of about chunkSize bytes.
+     *
+     * @param headerMap maps each column name to its index within a record
+     * @param pool      runs the parsing tasks
+     * @param chunkSize the number of bytes after which a chunk ends at the
+     *                  next newline
+     * @return the songs, in the order they appear in the file
+     * @throws IOException when there is trouble reading the file or a record
+     *                     is malformed
+     */
+    public List<Song> parseParallel(Map<String, Integer> headerMap, ForkJoinPool pool, int chunkSize)
+            throws IOException {
+        // fail on missing columns before starting any tasks
+        new SongRecordParser(headerMap);
+
+        List<Long> boundaries = chunkBoundaries(chunkSize);
+        try {
+            return pool.invoke(new ChunkTask(headerMap, boundaries, 0, boundaries.size() - 1));
+        } catch (UncheckedChunkException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Parses the chunks of the file on pool in the same way as parseParallel,
+     * but hands the songs of each chunk to action on the calling thread as
+     * soon as that chunk and the ones before it are done, in the order the
+     * songs appear in the file. Only about two chunks per thread of the pool
+     * are parsed ahead of action, so the songs of the whole file are never
+     * held at once.
+     *
+     * @param headerMap maps each column name to its index within a record
+     * @param pool      runs the parsing tasks
+     * @param action    receives each song, on the calling thread
+     * @throws IOException when there is trouble reading the file or a record
+     *                     is malformed
+     */
+    public void forEachSongParallel(Map<String, Integer> headerMap, ForkJoinPool pool, Consumer<Song> action)
+            throws IOException {
+        forEachSongParallel(headerMap, pool, chunkSize(pool), action);
+    }
+
+    /**
+     * Parses the chunks of the file on pool and hands their songs to action in
+     * file order, cutting the file into chunks of about chunkSize bytes.
+     *
+     * @param headerMap maps each column name to its index within a record
+     * @param pool      runs the parsing tasks
+     * @param chunkSize the number of bytes after which a chunk ends at the
+     *                  next newline
+     * @param action    receives each song, on the calling thread
+     * @throws IOException when there is trouble reading the file or a record
+     *                     is malformed
+     */
+    public void forEachSongParallel(Map<String, Integer> headerMap, ForkJoinPool pool, int chunkSize,
+            Consumer<Song> action) throws IOException {
+        // fail on missing columns before starting any tasks
+        new SongRecordParser(headerMap);
+
+        List<Long> boundaries = chunkBoundaries(chunkSize);
+        int chunks = boundaries.size() - 1;
+        int ahead = pool.getParallelism() * 2;
+        Deque<ForkJoinTask<List<Song>>> parsing = new ArrayDeque<>();
+        int next = 0;
+        try {
+            while (next < chunks || !parsing.isEmpty()) {
+                while (next < chunks && parsing.size() < ahead) {
+                    parsing.add(pool.submit(new ChunkTask(headerMap, boundaries, next, next + 1)));
+                    next++;
+                }
+                parsing.remove().join().forEach(action);
+            }
+        } catch (UncheckedChunkException e) {
+            throw e.getCause();
+        } finally {
+            for (ForkJoinTask<List<Song>> task : parsing) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * Picks a chunk size that gives about four chunks per thread of pool.
+     */
+    private int chunkSize(ForkJoinPool pool) {
+        long dataSize = fileSize - dataStart;
+        long chunkSize = dataSize / (pool.getParallelism() * 4L);
+        return (int) Math.max(MIN_CHUNK_SIZE, Math.min(WINDOW_SIZE / 2, chunkSize));
+    }
+
+    /**
+     * Cuts the data after the header line into chunks of about chunkSize
+     * bytes that end on record boundaries.
+     *
+     * @return the start of each chunk, followed by the end of the file
+     */
+    private List<Long> chunkBoundaries(int chunkSize) throws IOException {
+        List<Long> boundaries = new ArrayList<>();
+        long position = dataStart;
+        boundaries.add(position);
+        while (position < fileSize) {
+            position = nextRecordStart(Math.min(position + chunkSize, fileSize));
+            boundaries.add(position);
+        }
+        return boundaries;
+    }
+
+    /**
+     * Finds the start of the first record at or after position: either
+     * position itself when it follows a newline, or the byte after the next
+     * newline.
+     */
+    private long nextRecordStart(long position) throws IOException {
+        if (position >= fileSize) {
+            return fileSize;
+        }
+
+        ByteBuffer block = ByteBuffer.allocate(8192);
+        long blockStart = position - 1;
+        while (blockStart < fileSize) {
+            block.clear();
+            int read = channel.read(block, blockStart);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (block.get(i) == '\n') {
+                    return blockStart + i + 1;
+                }
+            }
+            blockStart += read;
+        }
+        return fileSize;
+    }
+
+    /**
+     * Wraps the IOException of a chunk so that it can leave a fork/join task.
+     */
+    private static class UncheckedChunkException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        UncheckedChunkException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * Task that parses the chunks between two indexes of the boundary list,
+     * splitting itself in half until it covers a single chunk.
+     */
+    private class ChunkTask extends RecursiveTask<List<Song>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Map<String, Integer> headerMap;
+        private final List<Long> boundaries;
+        // first chunk (inclusive) and last chunk (exclusive) handled by this task
+        private final int from;
+        private final int to;
+
+        ChunkTask(Map<String, Integer> headerMap, List<Long> boundaries, int from, int to) {
+            this.headerMap = headerMap;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Song> compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                ChunkTask right = new ChunkTask(headerMap, boundaries, middle, to);
+                right.fork();
+                List<Song> songs = new ChunkTask(headerMap, boundaries, from, middle).compute();
+                songs.addAll(right.join());
+                return songs;
+            }
+
+            List<Song> songs = new ArrayList<>();
+            if (to == from) {
+                return songs;
+            }
+            try {
+                long start = boundaries.get(from);
+                int length = (int) (boundaries.get(to) - start);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                new SongRecordParser(headerMap).parseRecords(buffer, 0, length, true, songs::add);
+            } catch (IOException e) {
+                throw new UncheckedChunkException(e);
+            }
+            return songs;
+        }
+    }
+
+    /**
+     * Closes the underlying file. Buffers that were already mapped stay valid
+     * until they are garbage collected.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,131 @@
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * This class is the position that a page of getRange results ends at, along
+ * with the year range and loudness filter of the query, so that the next page
+ * can be found without repeating the query from the start. It is handed to
+ * callers as an opaque, URL-safe string. The position is the (year, title, ID)
+ * of the last song on the page, which is also how the year index orders its
+ * songs, so the next page starts with a single seek into that index.
+ */
+public class PageToken {
+
+    // first byte of every token, to reject tokens of a different format
+    private static final byte VERSION = 1;
+
+    private final Integer yearLow;
+    private final Integer yearHigh;
+    private final Integer loudThreshold;
+    // position of the last song that was returned
+    private final int lastYear;
+    private final String lastTitle;
+    private final int lastId;
+
+    /**
+     * Creates a token for the page of a query that ends with last.
+     *
+     * @param yearLow       the minimum year of the query, or null
+     * @param yearHigh      the maximum year of the query, or null
+     * @param loudThreshold the loudness threshold of the query, or null
+     * @param last          the last song of the page
+     * @param lastId        the ID of the last song
+     */
+    public PageToken(Integer yearLow, Integer yearHigh, Integer loudThreshold, Song last, int lastId) {
+        this(yearLow, yearHigh, loudThreshold, last.getYear(), last.getTitle(), lastId);
+    }
+
+    private PageToken(Integer yearLow, Integer yearHigh, Integer loudThreshold, int lastYear,
+            String lastTitle, int lastId) {
+        this.yearLow = yearLow;
+        this.yearHigh = yearHigh;
+        this.loudThreshold = loudThreshold;
+        this.lastYear = lastYear;
+        this.lastTitle = lastTitle;
+        this.lastId = lastId;
+    }
+
+    public Integer getYearLow() {
+        return yearLow;
+    }
+
+    public Integer getYearHigh() {
+        return yearHigh;
+    }
+
+    public Integer getLoudThreshold() {
+        return loudThreshold;
+    }
+
+    /**
+     * @return a song with the year and title of the last song of the page,
+     *     which can be passed to SongIndex.iteratorAfter with getLastId
+     */
+    public Song lastPosition() {
+        return new Song(lastTitle, null, null, lastYear, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * @return the ID of the last song of the page
+     */
+    public int getLastId() {
+        return lastId;
+    }
+
+    /**
+     * @return this token as a URL-safe string
+     */
+    public String encode() {
+        byte[] title = lastTitle.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 3 * 5 + 8 + title.length);
+        buffer.put(VERSION);
+        putNullable(buffer, yearLow);
+        putNullable(buffer, yearHigh);
+        putNullable(buffer, loudThreshold);
+        buffer.putInt(lastYear);
+        buffer.putInt(lastId);
+        buffer.put(title);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Reads a token from the string created by encode.
+     *
+     * @param token the encoded token
+     * @return the decoded token
+     * @throws IllegalArgumentException when token was not created by encode
+     */
+    public static PageToken decode(String token) throws IllegalArgumentException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(token));
+            if (buffer.get() != VERSION) {
+                throw new IllegalArgumentException("Unsupported page token version");
+            }
+            Integer yearLow = getNullable(buffer);
+            Integer yearHigh = getNullable(buffer);
+            Integer loudThreshold = getNullable(buffer);
+            int lastYear = buffer.getInt();
+            int lastId = buffer.getInt();
+            String lastTitle = StandardCharsets.UTF_8.decode(buffer).toString();
+            return new PageToken(yearLow, yearHigh, loudThreshold, lastYear, lastTitle, lastId);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Malformed page token", e);
+        }
+    }
+
+    // Helper method to write a flag byte for whether value is present,
+    // followed by value or 0
+    private static void putNullable(ByteBuffer buffer, Integer value) {
+        buffer.put((byte) (value == null ? 0 : 1));
+        buffer.putInt(value == null ? 0 : value);
+    }
+
+    // Helper method to read a value written by putNullable
+    private static Integer getNullable(ByteBuffer buffer) {
+        boolean present = buffer.get() != 0;
+        int value = buffer.getInt();
+        return present ? Integer.valueOf(value) : null;
+    }
+}
@@ -0,0 +1,209 @@
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class describes a query over the loaded songs: a conjunction of range
+ * predicates on song attributes and optionally an artist and genre, an
+ * optional sort attribute and an optional limit on the number of results.
+ * Queries are run by Backend.query, which decides which index to scan. For
+ * example, the 10 most energetic songs from 2015 on with a bpm from 100 to
+ * 120 are
+ * new Query().where(YEAR, 2015, null).where(BPM, 100, 120).orderBy(ENERGY, true).limit(10).
+ */
+public class Query {
+
+    /**
+     * An inclusive range of attribute values, where null means unbounded.
+     */
+    public static class Range {
+        private final Integer low;
+        private final Integer high;
+
+        public Range(Integer low, Integer high) {
+            this.low = low;
+            this.high = high;
+        }
+
+        public Integer getLow() {
+            return low;
+        }
+
+        public Integer getHigh() {
+            return high;
+        }
+
+        /**
+         * @param value the value to check
+         * @return true if value is within the range
+         */
+        public boolean contains(int value) {
+            return (low == null || value >= low) && (high == null || value <= high);
+        }
+
+        // Helper method to create the range of values that are in both ranges
+        private Range intersect(Range other) {
+            Integer newLow = low;
+            if (other.low != null && (low == null || other.low > low)) {
+                newLow = other.low;
+            }
+            Integer newHigh = high;
+            if (other.high != null && (high == null || other.high < high)) {
+                newHigh = other.high;
+            }
+            return new Range(newLow, newHigh);
+        }
+    }
+
+    // the range that each constrained attribute must be within
+    private final Map<SongAttribute, Range> predicates = new EnumMap<>(SongAttribute.class);
+    // the attribute to sort by, or null to sort by title
+    private SongAttribute orderBy = null;
+    private boolean descending = false;
+    private int limit = Integer.MAX_VALUE;
+    // the artist and genre that songs must have, or null for any
+    private String artist = null;
+    private String genre = null;
+
+    /**
+     * Restricts the query to songs whose attribute is from low to high
+     * (inclusive). Restricting the same attribute twice keeps only the values
+     * within both ranges.
+     *
+     * @param attribute the attribute to restrict
+     * @param low       the smallest allowed value, or null for no minimum
+     * @param high      the largest allowed value, or null for no maximum
+     * @return this query
+     */
+    public Query where(SongAttribute attribute, Integer low, Integer high) {
+        Range range = new Range(low, high);
+        predicates.merge(attribute, range, Range::intersect);
+        return this;
+    }
+
+    /**
+     * Restricts the query to songs by an artist.
+     *
+     * @param artist the artist that songs must have
+     * @return this query
+     */
+    public Query whereArtist(String artist) {
+        this.artist = artist;
+        return this;
+    }
+
+    /**
+     * Restricts the query to songs of a genre.
+     *
+     * @param genre the top genre that songs must have
+     * @return this query
+     */
+    public Query whereGenre(String genre) {
+        this.genre = genre;
+        return this;
+    }
+
+    /**
+     * Sorts the results by an attribute. Songs with the same value are sorted
+     * by title, and songs that also share their title by ID. Without a call to
+     * this method, results are sorted by title.
+     *
+     * @param attribute  the attribute to sort by
+     * @param descending true to sort from the highest value to the lowest
+     * @return this query
+     */
+    public Query orderBy(SongAttribute attribute, boolean descending) {
+        this.orderBy = attribute;
+        this.descending = descending;
+        return this;
+    }
+
+    /**
+     * Limits the number of results to the first limit songs in sort order.
+     *
+     * @param limit the maximum number of results
+     * @return this query
+     * @throws IllegalArgumentException when limit is negative
+     */
+    public Query limit(int limit) throws IllegalArgumentException {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * @return the range of each restricted attribute
+     */
+    public Map<SongAttribute, Range> getPredicates() {
+        return predicates;
+    }
+
+    /**
+     * @return the artist that songs must have, or null for any artist
+     */
+    public String getArtist() {
+        return artist;
+    }
+
+    /**
+     * @return the genre that songs must have, or null for any genre
+     */
+    public String getGenre() {
+        return genre;
+    }
+
+    /**
+     * @return the attribute to sort by, or null when sorting by title
+     */
+    public SongAttribute getOrderBy() {
+        return orderBy;
+    }
+
+    /**
+     * @return true when sorting from the highest value to the lowest
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * @return the maximum number of results, or Integer.MAX_VALUE for no limit
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param song the song to check
+     * @return true if song satisfies every predicate of this query
+     */
+    public boolean matches(Song song) {
+        if ((artist != null && !artist.equals(song.getArtist()))
+                || (genre != null && !genre.equals(song.getGenres()))) {
+            return false;
+        }
+        for (Map.Entry<SongAttribute, Range> predicate : predicates.entrySet()) {
+            if (!predicate.getValue().contains(predicate.getKey().of(song))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param ids looks up the IDs that break ties between songs with the same
+     *     value and title, e.g. Backend::getId
+     * @return the order of the results, from first to last
+     */
+    public Comparator<Song> order(ToIntFunction<Song> ids) {
+        if (orderBy == null) {
+            return Comparator.naturalOrder();
+        }
+        Comparator<Song> byAttribute = Comparator.comparingInt(orderBy.getter());
+        return (descending ? byAttribute.reversed() : byAttribute).thenComparing(Comparator.naturalOrder())
+                .thenComparingInt(ids);
+    }
+}
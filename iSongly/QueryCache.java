@@ -0,0 +1,161 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+/**
+ * This class caches the song IDs returned by Backend queries, keyed by the
+ * year range, loudness threshold and kind of query. It holds at most a fixed
+ * number of results and evicts the least recently used one when it is full.
+ * The whole cache must be invalidated whenever the songs change.
+ *
+ * Queries are run outside of the cache's lock, so different queries can run at
+ * the same time. A result that was computed while the cache was invalidated is
+ * returned but not stored.
+ */
+public class QueryCache {
+
+    /**
+     * The kinds of queries whose results are cached.
+     */
+    public enum QueryKind {
+        // songs within the year range that pass the loudness filter
+        FILTER,
+        // the five most danceable of those songs
+        FIVE_MOST
+    }
+
+    /**
+     * Identifies one query result in the cache.
+     */
+    private static class Key {
+        private final Integer yearLow;
+        private final Integer yearHigh;
+        private final Integer loudThreshold;
+        private final QueryKind kind;
+
+        Key(Integer yearLow, Integer yearHigh, Integer loudThreshold, QueryKind kind) {
+            this.yearLow = yearLow;
+            this.yearHigh = yearHigh;
+            this.loudThreshold = loudThreshold;
+            this.kind = kind;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return Objects.equals(yearLow, key.yearLow) && Objects.equals(yearHigh, key.yearHigh)
+                    && Objects.equals(loudThreshold, key.loudThreshold) && kind == key.kind;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(yearLow, yearHigh, loudThreshold, kind);
+        }
+    }
+
+    // the maximum number of results that are kept
+    private final int maxSize;
+    // cached results, in order from least to most recently used
+    private final LinkedHashMap<Key, int[]> results;
+    // incremented by every invalidation, so stale results are not stored
+    private long generation = 0;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param maxSize the maximum number of results to keep, or 0 to disable
+     *                caching
+     * @throws IllegalArgumentException when maxSize is negative
+     */
+    public QueryCache(int maxSize) throws IllegalArgumentException {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize must not be negative: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.results = new LinkedHashMap<Key, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, int[]> eldest) {
+                return size() > QueryCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached result of a query, or runs the query and caches its
+     * result when there is none.
+     *
+     * @param kind          the kind of query
+     * @param yearLow       the minimum year of the query, or null
+     * @param yearHigh      the maximum year of the query, or null
+     * @param loudThreshold the loudness threshold of the query, or null
+     * @param query         computes the result on a cache miss
+     * @return a copy of the result, which the caller may modify
+     */
+    public int[] get(QueryKind kind, Integer yearLow, Integer yearHigh, Integer loudThreshold,
+            Supplier<int[]> query) {
+        Key key = new Key(yearLow, yearHigh, loudThreshold, kind);
+        long queryGeneration;
+
+        synchronized (this) {
+            int[] cached = results.get(key);
+            if (cached != null) {
+                hits++;
+                return cached.clone();
+            }
+            misses++;
+            queryGeneration = generation;
+        }
+
+        int[] result = query.get();
+
+        synchronized (this) {
+            if (maxSize > 0 && queryGeneration == generation) {
+                results.put(key, result.clone());
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Removes all cached results. This must be called whenever the songs that
+     * queries run over change.
+     */
+    public synchronized void invalidate() {
+        results.clear();
+        generation++;
+    }
+
+    /**
+     * @return the number of results currently cached
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * @return the maximum number of results that are kept
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return the number of queries that were answered from the cache
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of queries that had to be run
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
@@ -85,6 +85,169 @@ public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
     }
   }
 
+  /**
+   * Removes one occurrence of a value from the tree.
+   *
+   * @param data the value to remove
+   * @return true if a value equal to data was found and removed, and false
+   *         if the tree does not contain data
+   * @throws NullPointerException if data is null
+   */
+  public boolean remove(Comparable<T> data) throws NullPointerException {
+    if (data == null) {
+      throw new NullPointerException("Null data argument");
+    }
+
+    RBTNode<T> curr = (RBTNode<T>) this.root;
+    while (curr != null) {
+      int comparison = data.compareTo(curr.getData());
+      if (comparison < 0) {
+        curr = curr.getLeft();
+      } else if (comparison > 0) {
+        curr = curr.getRight();
+      } else {
+        removeNode(curr);
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  /**
+   * Removes every value from min to max (inclusive) from the tree. Each value
+   * is removed with the same O(log n) operation as remove.
+   *
+   * @param min the smallest value to remove, or null for no minimum
+   * @param max the largest value to remove, or null for no maximum
+   * @return the number of values that were removed
+   */
+  public int removeRange(Comparable<T> min, Comparable<T> max) {
+    int removed = 0;
+
+    while (true) {
+      // find the node with the smallest value that is at least min
+      RBTNode<T> lowest = null;
+      RBTNode<T> curr = (RBTNode<T>) this.root;
+      while (curr != null) {
+        if (min == null || min.compareTo(curr.getData()) <= 0) {
+          lowest = curr;
+          curr = curr.getLeft();
+        } else {
+          curr = curr.getRight();
+        }
+      }
+
+      if (lowest == null || (max != null && max.compareTo(lowest.getData()) < 0)) {
+        return removed;
+      }
+      removeNode(lowest);
+      removed++;
+    }
+  }
+
+  /**
+   * Removes a node from the tree. A node with two children takes the value
+   * of its in-order successor, and the successor's node is removed instead,
+   * so the node that is unlinked always has at most one child. When a black
+   * node is unlinked, ensureBlackProperty repairs the resulting black height
+   * violation.
+   *
+   * @param node the node to remove
+   */
+  protected void removeNode(RBTNode<T> node) {
+    if (node.getLeft() != null && node.getRight() != null) {
+      RBTNode<T> successor = node.getRight();
+      while (successor.getLeft() != null) {
+        successor = successor.getLeft();
+      }
+      node.setData(successor.getData());
+      node = successor;
+    }
+
+    RBTNode<T> child = (node.getLeft() != null) ? node.getLeft() : node.getRight();
+    RBTNode<T> parent = node.getUp();
+
+    // every ancestor of the removed node loses one node from its subtree
+    for (BSTNode<T> ancestor = parent; ancestor != null; ancestor = ancestor.getUp()) {
+      ancestor.subtreeSize--;
+    }
+
+    // replace the node with its only child (or with nothing)
+    if (child != null) {
+      child.setUp(parent);
+    }
+    if (parent == null) {
+      this.root = child;
+    } else if (parent.getLeft() == node) {
+      parent.setLeft(child);
+    } else {
+      parent.setRight(child);
+    }
+
+    if (!node.isRed()) {
+      if (child != null && child.isRed()) {
+        child.isRed = false;
+      } else {
+        ensureBlackProperty(child, parent);
+      }
+    }
+  }
+
+  /**
+   * Repairs the black height violation left behind when a black node is
+   * removed: every path through doubleBlack has one black node fewer than
+   * the paths through its sibling. The sibling's subtree is recolored or
+   * rotated towards doubleBlack, moving the violation up the tree until it
+   * can be absorbed by a red node or reaches the root.
+   *
+   * @param doubleBlack the node that replaced the removed node, or null
+   * @param parent      the parent of doubleBlack
+   */
+  protected void ensureBlackProperty(RBTNode<T> doubleBlack, RBTNode<T> parent) {
+    while (doubleBlack != this.root && (doubleBlack == null || !doubleBlack.isRed())) {
+      boolean isLeft = parent.getLeft() == doubleBlack;
+      RBTNode<T> sibling = isLeft ? parent.getRight() : parent.getLeft();
+
+      if (sibling.isRed()) {
+        // Case 1: red sibling, rotate it above the parent so the sibling is black
+        sibling.isRed = false;
+        parent.isRed = true;
+        rotate(sibling, parent);
+        sibling = isLeft ? parent.getRight() : parent.getLeft();
+      }
+
+      RBTNode<T> near = isLeft ? sibling.getLeft() : sibling.getRight();
+      RBTNode<T> far = isLeft ? sibling.getRight() : sibling.getLeft();
+
+      if ((near == null || !near.isRed()) && (far == null || !far.isRed())) {
+        // Case 2: black sibling with black children, push the violation up
+        sibling.isRed = true;
+        doubleBlack = parent;
+        parent = doubleBlack.getUp();
+      } else {
+        if (far == null || !far.isRed()) {
+          // Case 3: only the near child is red, rotate it into the sibling position
+          near.isRed = false;
+          sibling.isRed = true;
+          rotate(near, sibling);
+          far = sibling;
+          sibling = near;
+        }
+        // Case 4: red far child, rotate the sibling above the parent
+        sibling.isRed = parent.isRed;
+        parent.isRed = false;
+        far.isRed = false;
+        rotate(sibling, parent);
+        doubleBlack = (RBTNode<T>) this.root;
+      }
+    }
+
+    if (doubleBlack != null) {
+      doubleBlack.isRed = false;
+    }
+  }
+
   /**
    * Tester method for cases where the aunt is red.
    */
@@ -207,4 +370,159 @@ public class RedBlackTree<T extends Comparable<T>> extends BSTRotation<T> {
 
     assertEquals("[ 62(b), 41(r), 81(r), 32(b), 57(b), 79(b), 93(b), 97(r) ]", tree.root.toLevelOrderString());
   }
+
+  /**
+   * Recursive helper method for tests that checks that every node in the
+   * subtree has the right parent reference and subtree size.
+   *
+   * @return true if all parent references and subtree sizes are correct
+   */
+  private static <R> boolean linksAndSizesValid(BSTNode<R> node) {
+    if (node == null) {
+      return true;
+    }
+    int expected = 1;
+    if (node.getLeft() != null) {
+      if (node.getLeft().getUp() != node) {
+        return false;
+      }
+      expected += node.getLeft().getSubtreeSize();
+    }
+    if (node.getRight() != null) {
+      if (node.getRight().getUp() != node) {
+        return false;
+      }
+      expected += node.getRight().getSubtreeSize();
+    }
+    return node.getSubtreeSize() == expected && linksAndSizesValid(node.getLeft())
+        && linksAndSizesValid(node.getRight());
+  }
+
+  /**
+   * Tests that subtree sizes and parent references stay correct through
+   * insertions and rotations, and that size, rank, select and countInRange
+   * agree with a brute-force count, including for duplicate values.
+   */
+  @Test
+  public void orderStatisticsTest() {
+    RedBlackTree<Integer> tree = new RedBlackTree<>();
+    java.util.List<Integer> values = new java.util.ArrayList<>();
+    java.util.Random random = new java.util.Random(400);
+
+    for (int i = 0; i < 500; i++) {
+      int value = random.nextInt(200);
+      tree.insert(value);
+      values.add(value);
+    }
+    java.util.Collections.sort(values);
+
+    assertNull(tree.root.getUp(), "Root should have no parent.");
+    assertTrue(linksAndSizesValid(tree.root), "Parent references or subtree sizes are wrong.");
+    assertEquals(500, tree.size());
+
+    for (int i = 0; i < values.size(); i++) {
+      assertEquals(values.get(i), tree.select(i));
+    }
+    assertThrows(IndexOutOfBoundsException.class, () -> tree.select(500));
+
+    for (int key = -1; key <= 201; key += 7) {
+      int below = 0;
+      int inRange = 0;
+      for (int value : values) {
+        below += value < key ? 1 : 0;
+        inRange += (value >= key && value <= key + 20) ? 1 : 0;
+      }
+      assertEquals(below, tree.rank(key));
+      assertEquals(inRange, tree.countInRange(key, key + 20));
+    }
+    assertEquals(500, tree.countInRange(null, null));
+    assertEquals(0, tree.countInRange(50, 10));
+  }
+
+  /**
+   * Recursive helper method for tests that checks the red-black tree
+   * properties and the parent references of the subtree rooted at node.
+   *
+   * @return the number of black nodes on every path from node to a missing
+   *         child, or -1 when the subtree is not a valid red-black tree
+   */
+  protected static <R> int blackHeight(RBTNode<R> node) {
+    if (node == null) {
+      return 0;
+    }
+    if ((node.getLeft() != null && node.getLeft().getUp() != node)
+        || (node.getRight() != null && node.getRight().getUp() != node)) {
+      return -1;
+    }
+    if (node.isRed() && ((node.getLeft() != null && node.getLeft().isRed())
+        || (node.getRight() != null && node.getRight().isRed()))) {
+      return -1;
+    }
+
+    int left = blackHeight(node.getLeft());
+    int right = blackHeight(node.getRight());
+    if (left < 0 || left != right) {
+      return -1;
+    }
+    return left + (node.isRed() ? 0 : 1);
+  }
+
+  /**
+   * Tests that removing values one at a time keeps the tree a valid
+   * red-black tree with correct subtree sizes, and removes only one
+   * occurrence of duplicate values.
+   */
+  @Test
+  public void removeTest() {
+    RedBlackTree<Integer> tree = new RedBlackTree<>();
+    java.util.List<Integer> values = new java.util.ArrayList<>();
+    java.util.Random random = new java.util.Random(500);
+
+    for (int i = 0; i < 400; i++) {
+      int value = random.nextInt(150);
+      tree.insert(value);
+      values.add(value);
+    }
+
+    assertFalse(tree.remove(1000), "Missing value should not be removed.");
+
+    while (!values.isEmpty()) {
+      Integer value = values.remove(random.nextInt(values.size()));
+      assertTrue(tree.remove(value), "Value " + value + " should be removed.");
+      assertEquals(values.size(), tree.size());
+      assertEquals(values.contains(value), tree.contains(value));
+      if (tree.root != null) {
+        assertFalse(((RBTNode<Integer>) tree.root).isRed(), "Root should be black.");
+      }
+      assertTrue(blackHeight((RBTNode<Integer>) tree.root) >= 0, "Invalid tree after removing " + value);
+      assertTrue(linksAndSizesValid(tree.root), "Wrong sizes after removing " + value);
+    }
+    assertTrue(tree.isEmpty());
+  }
+
+  /**
+   * Tests that removeRange removes exactly the values within its inclusive
+   * bounds, including unbounded ends.
+   */
+  @Test
+  public void removeRangeTest() {
+    RedBlackTree<Integer> tree = new RedBlackTree<>();
+    for (int i = 0; i < 100; i++) {
+      tree.insert(i % 50);
+    }
+
+    assertEquals(22, tree.removeRange(10, 20));
+    assertEquals(78, tree.size());
+    assertFalse(tree.contains(10));
+    assertFalse(tree.contains(20));
+    assertTrue(tree.contains(9));
+    assertTrue(tree.contains(21));
+    assertTrue(blackHeight((RBTNode<Integer>) tree.root) >= 0);
+    assertTrue(linksAndSizesValid(tree.root));
+
+    assertEquals(0, tree.removeRange(12, 18));
+    assertEquals(20, tree.removeRange(null, 9));
+    assertEquals(58, tree.removeRange(21, null));
+    assertTrue(tree.isEmpty());
+  }
 }
@@ -34,7 +34,7 @@ public class Song implements Comparable<Song> {
                 Comparator<Song> comparator) {
         this.title = title;
         this.artist = artist;
-        this.genres = genres;
+        this.genres = genre;
         this.year = year;
         this.bpm = bpm;
         this.energy = energy;
@@ -77,6 +77,17 @@ public class Song implements Comparable<Song> {
     public int getLoudness() { return loudness; } 
     public int getLiveness() { return liveness; }
 
+    /**
+     * Replaces the artist and genres of this song with the equal strings held
+     * by the dictionaries, so that all songs by the same artist share a single
+     * String. The codes of the strings stay with the dictionaries, so a song
+     * can be shared by several of them.
+     */
+    public void shareStrings(StringDictionary artists, StringDictionary genreDictionary) {
+        artist = artists.decode(artists.encode(artist));
+        genres = genreDictionary.decode(genreDictionary.encode(genres));
+    }
+
     // comparisons
     
     public int compareTo(Song other) {
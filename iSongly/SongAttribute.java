@@ -0,0 +1,35 @@
+import java.util.function.ToIntFunction;
+
+/**
+ * The int attributes of a song that can be indexed and filtered on.
+ */
+public enum SongAttribute {
+    YEAR(Song::getYear),
+    BPM(Song::getBPM),
+    ENERGY(Song::getEnergy),
+    DANCEABILITY(Song::getDanceability),
+    LOUDNESS(Song::getLoudness),
+    LIVENESS(Song::getLiveness);
+
+    // reads the value of this attribute from a song
+    private final ToIntFunction<Song> getter;
+
+    SongAttribute(ToIntFunction<Song> getter) {
+        this.getter = getter;
+    }
+
+    /**
+     * @param song the song to read from
+     * @return the value of this attribute for song
+     */
+    public int of(Song song) {
+        return getter.applyAsInt(song);
+    }
+
+    /**
+     * @return a function that reads this attribute, e.g. to create a SongIndex
+     */
+    public ToIntFunction<Song> getter() {
+        return getter;
+    }
+}
@@ -0,0 +1,433 @@
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * This class is a compressed set of song IDs, organized like a Roaring bitmap.
+ * IDs are split into their high and low 16 bits. Each distinct high half has a
+ * container holding the low halves, which is a sorted char array while it has
+ * at most 4096 values and a 65536 bit bitmap once it has more. Sparse sets
+ * therefore take about two bytes per ID and dense sets one bit per ID, and
+ * intersections and unions work one container at a time.
+ *
+ * IDs are visited in ascending order, so this is meant for non-negative IDs
+ * such as those handed out by SongStore.
+ */
+public class SongBitmap {
+
+    // largest number of values held by an array container
+    private static final int MAX_ARRAY_SIZE = 4096;
+
+    // high halves of the IDs, in ascending order
+    private char[] keys = new char[4];
+    // the container for each key
+    private Container[] containers = new Container[4];
+    // the number of keys in use
+    private int size = 0;
+
+    /**
+     * Adds an ID to the set.
+     *
+     * @param id the ID to add
+     */
+    public void add(int id) {
+        char high = (char) (id >>> 16);
+        int index = find(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high, new ArrayContainer(4));
+        }
+        containers[index] = containers[index].add((char) id);
+    }
+
+    /**
+     * Removes an ID from the set.
+     *
+     * @param id the ID to remove
+     * @return true if the ID was in the set
+     */
+    public boolean remove(int id) {
+        int index = find((char) (id >>> 16));
+        if (index < 0 || !containers[index].contains((char) id)) {
+            return false;
+        }
+        containers[index] = containers[index].remove((char) id);
+        if (containers[index].cardinality() == 0) {
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            System.arraycopy(containers, index + 1, containers, index, size - index - 1);
+            containers[--size] = null;
+        }
+        return true;
+    }
+
+    /**
+     * @param id the ID to look for
+     * @return true if the ID is in the set
+     */
+    public boolean contains(int id) {
+        int index = find((char) (id >>> 16));
+        return index >= 0 && containers[index].contains((char) id);
+    }
+
+    /**
+     * @return the number of IDs in the set
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * @return true if the set has no IDs
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Creates the intersection of this set and other. Neither set is changed.
+     *
+     * @param other the set to intersect with
+     * @return a new set with the IDs that are in both sets
+     */
+    public SongBitmap and(SongBitmap other) {
+        SongBitmap result = new SongBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.insertContainer(result.size, keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the union of this set and other. Neither set is changed.
+     *
+     * @param other the set to unite with
+     * @return a new set with the IDs that are in either set
+     */
+    public SongBitmap or(SongBitmap other) {
+        SongBitmap result = copy();
+        result.orInPlace(other);
+        return result;
+    }
+
+    /**
+     * Adds every ID of other to this set, changing this set but not other.
+     * This is cheaper than or when many sets are combined into one.
+     *
+     * @param other the set whose IDs are added
+     */
+    public void orInPlace(SongBitmap other) {
+        for (int j = 0; j < other.size; j++) {
+            int index = find(other.keys[j]);
+            if (index < 0) {
+                insertContainer(-index - 1, other.keys[j], other.containers[j].copy());
+            } else {
+                containers[index] = containers[index].orInPlace(other.containers[j]);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of this set that can be changed independently
+     */
+    public SongBitmap copy() {
+        SongBitmap copy = new SongBitmap();
+        copy.keys = Arrays.copyOf(keys, Math.max(4, size));
+        copy.containers = new Container[copy.keys.length];
+        for (int i = 0; i < size; i++) {
+            copy.containers[i] = containers[i].copy();
+        }
+        copy.size = size;
+        return copy;
+    }
+
+    /**
+     * Passes every ID in the set to action, in ascending order.
+     *
+     * @param action is called with each ID
+     */
+    public void forEach(IntConsumer action) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, action);
+        }
+    }
+
+    /**
+     * @return the IDs in the set, in ascending order
+     */
+    public int[] toArray() {
+        IntStream.Builder ids = IntStream.builder();
+        forEach(ids::add);
+        return ids.build().toArray();
+    }
+
+    // Helper method to find the index of the container for a key, or
+    // -(insertion point) - 1 when there is none
+    private int find(char key) {
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    // Helper method to insert a container at an index of the key array
+    private void insertContainer(int index, char key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = key;
+        containers[index] = container;
+        size++;
+    }
+
+    /**
+     * Holds the low halves of the IDs that share a high half. Methods that
+     * change a container return the container that replaces it, which is a
+     * different kind of container when its size crosses MAX_ARRAY_SIZE.
+     */
+    private static abstract class Container {
+        abstract Container add(char value);
+
+        abstract Container remove(char value);
+
+        abstract boolean contains(char value);
+
+        abstract int cardinality();
+
+        // returns a new container, without changing this one or other
+        abstract Container and(Container other);
+
+        // may change this container, but never other
+        abstract Container orInPlace(Container other);
+
+        abstract Container copy();
+
+        abstract void forEach(int high, IntConsumer action);
+    }
+
+    /**
+     * A container that keeps its values in a sorted array.
+     */
+    private static class ArrayContainer extends Container {
+        private char[] values;
+        private int size = 0;
+
+        ArrayContainer(int capacity) {
+            values = new char[capacity];
+        }
+
+        @Override
+        Container add(char value) {
+            // IDs are usually added in ascending order, so check the end first
+            int index = (size == 0 || values[size - 1] < value) ? -size - 1
+                    : Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                return this;
+            }
+            if (size == MAX_ARRAY_SIZE) {
+                return toBitmap().add(value);
+            }
+            index = -index - 1;
+            if (size == values.length) {
+                values = Arrays.copyOf(values, Math.min(MAX_ARRAY_SIZE, size * 2));
+            }
+            System.arraycopy(values, index, values, index + 1, size - index);
+            values[index] = value;
+            size++;
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            int index = Arrays.binarySearch(values, 0, size, value);
+            if (index >= 0) {
+                System.arraycopy(values, index + 1, values, index, size - index - 1);
+                size--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return size;
+        }
+
+        @Override
+        Container and(Container other) {
+            ArrayContainer result = new ArrayContainer(Math.max(1, Math.min(size, other.cardinality())));
+            for (int i = 0; i < size; i++) {
+                if (other.contains(values[i])) {
+                    result.values[result.size++] = values[i];
+                }
+            }
+            return result;
+        }
+
+        @Override
+        Container orInPlace(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.copy().orInPlace(this);
+            }
+
+            // merge the two sorted arrays
+            ArrayContainer array = (ArrayContainer) other;
+            char[] merged = new char[size + array.size];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < size || j < array.size) {
+                if (j == array.size || (i < size && values[i] < array.values[j])) {
+                    merged[count++] = values[i++];
+                } else if (i == size || array.values[j] < values[i]) {
+                    merged[count++] = array.values[j++];
+                } else {
+                    merged[count++] = values[i++];
+                    j++;
+                }
+            }
+            values = merged;
+            size = count;
+            return size > MAX_ARRAY_SIZE ? toBitmap() : this;
+        }
+
+        @Override
+        Container copy() {
+            ArrayContainer copy = new ArrayContainer(0);
+            copy.values = Arrays.copyOf(values, Math.max(1, size));
+            copy.size = size;
+            return copy;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(high | values[i]);
+            }
+        }
+
+        // Helper method to convert this container to a bitmap container
+        private BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < size; i++) {
+                bitmap.add(values[i]);
+            }
+            return bitmap;
+        }
+    }
+
+    /**
+     * A container that keeps its values as the set bits of a 65536 bit bitmap.
+     */
+    private static class BitmapContainer extends Container {
+        private final long[] words = new long[1024];
+        private int cardinality = 0;
+
+        @Override
+        Container add(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) == 0) {
+                words[value >>> 6] |= bit;
+                cardinality++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char value) {
+            long bit = 1L << value;
+            if ((words[value >>> 6] & bit) != 0) {
+                words[value >>> 6] &= ~bit;
+                cardinality--;
+            }
+            return cardinality <= MAX_ARRAY_SIZE ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(char value) {
+            return (words[value >>> 6] & (1L << value)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+
+            BitmapContainer result = new BitmapContainer();
+            long[] otherWords = ((BitmapContainer) other).words;
+            for (int i = 0; i < words.length; i++) {
+                result.words[i] = words[i] & otherWords[i];
+                result.cardinality += Long.bitCount(result.words[i]);
+            }
+            return result.cardinality <= MAX_ARRAY_SIZE ? result.toArray() : result;
+        }
+
+        @Override
+        Container orInPlace(Container other) {
+            if (other instanceof ArrayContainer) {
+                other.forEach(0, value -> add((char) value));
+                return this;
+            }
+
+            long[] otherWords = ((BitmapContainer) other).words;
+            cardinality = 0;
+            for (int i = 0; i < words.length; i++) {
+                words[i] |= otherWords[i];
+                cardinality += Long.bitCount(words[i]);
+            }
+            return this;
+        }
+
+        @Override
+        Container copy() {
+            BitmapContainer copy = new BitmapContainer();
+            System.arraycopy(words, 0, copy.words, 0, words.length);
+            copy.cardinality = cardinality;
+            return copy;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < words.length; i++) {
+                long word = words[i];
+                while (word != 0) {
+                    action.accept(high | (i << 6) | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        // Helper method to convert this container to an array container
+        private ArrayContainer toArray() {
+            ArrayContainer array = new ArrayContainer(Math.max(1, cardinality));
+            forEach(0, value -> array.values[array.size++] = (char) value);
+            return array;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+
+/**
+ * This class is a secondary index over songs, keyed by one of their int
+ * attributes such as year or loudness. It stores the songs in its own red-black
+ * tree ordered by that attribute, so all songs whose attribute falls within a
+ * range can be visited with a bounded scan in attribute order. Songs with the
+ * same attribute value are kept in their natural (title) order, and songs that
+ * also share their title in ID order, so every song has a unique position that
+ * a scan can be resumed from. An index in
+ * descending order can be created by negating the attribute.
+ */
+public class SongIndex {
+
+    /**
+     * An entry of the index, pairing a song with the attribute value it is
+     * sorted by and the ID it had when it was added. The ID is kept in the
+     * entry, so the order of the entries cannot change while they are in the
+     * tree.
+     */
+    protected static class Entry implements Comparable<Entry> {
+        // the attribute value of the song
+        protected final int key;
+        // the indexed song
+        protected final Song song;
+        // the ID of the song, which breaks ties between equal songs
+        protected final int id;
+
+        public Entry(int key, Song song, int id) {
+            this.key = key;
+            this.song = song;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int comparison = Integer.compare(this.key, other.key);
+            if (comparison == 0) {
+                comparison = this.song.compareTo(other.song);
+            }
+            return comparison != 0 ? comparison : Integer.compare(this.id, other.id);
+        }
+    }
+
+    // reads the attribute that this index is keyed by
+    private final ToIntFunction<Song> attribute;
+    // stores the entries ordered by attribute value
+    private final IterableRedBlackTree<Entry> tree = new IterableRedBlackTree<>();
+
+    /**
+     * Creates an empty index keyed by attribute.
+     *
+     * @param attribute reads the attribute value of a song, e.g. Song::getYear
+     */
+    public SongIndex(ToIntFunction<Song> attribute) {
+        this.attribute = attribute;
+    }
+
+    /**
+     * Adds a song to the index.
+     *
+     * @param song the song to add
+     * @param id   the ID of the song
+     */
+    public void insert(Song song, int id) {
+        tree.insert(new Entry(attribute.applyAsInt(song), song, id));
+    }
+
+    /**
+     * Adds many songs to the index at once, using the linear time bulk loading
+     * of the underlying tree.
+     *
+     * @param songs the songs to add
+     * @param ids   looks up the ID of each song
+     */
+    public void bulkLoad(Collection<Song> songs, ToIntFunction<Song> ids) {
+        List<Entry> entries = new ArrayList<>(songs.size());
+        for (Song song : songs) {
+            entries.add(new Entry(attribute.applyAsInt(song), song, ids.applyAsInt(song)));
+        }
+        tree.bulkLoad(entries);
+    }
+
+    /**
+     * Removes the entry for a song with the same attribute value, title and ID
+     * as song from the index.
+     *
+     * @param song the song to remove
+     * @param id   the ID the song was added with
+     * @return true if a matching entry was removed
+     */
+    public boolean remove(Song song, int id) {
+        return tree.remove(new Entry(attribute.applyAsInt(song), song, id));
+    }
+
+    /**
+     * Removes all songs from the index.
+     */
+    public void clear() {
+        tree.clear();
+    }
+
+    /**
+     * @return the number of songs in the index
+     */
+    public int size() {
+        return tree.size();
+    }
+
+    /**
+     * Passes every song whose attribute is from low to high (inclusive) to
+     * action, in ascending attribute order.
+     *
+     * @param low    the smallest attribute value, or null for no minimum
+     * @param high   the largest attribute value, or null for no maximum
+     * @param action is called with each song in the range
+     */
+    public void forEachInRange(Integer low, Integer high, Consumer<Song> action) {
+        tree.forEachInRange(bound(low), bound(high), entry -> action.accept(entry.song));
+    }
+
+    /**
+     * Returns an iterator over the songs whose attribute is from low to high
+     * (inclusive), in ascending attribute order. Unlike forEachInRange, the
+     * caller can stop early without visiting the rest of the range.
+     *
+     * @param low  the smallest attribute value, or null for no minimum
+     * @param high the largest attribute value, or null for no maximum
+     * @return an iterator over the songs in the range
+     */
+    public Iterator<Song> iterator(Integer low, Integer high) {
+        return songs(tree.iterator(bound(low), bound(high)));
+    }
+
+    /**
+     * Returns an iterator over the songs that come after song in this index,
+     * by attribute value, then title, then ID, up to an attribute value of
+     * high (inclusive). The start is found with one O(log n) descent of the
+     * tree, and song itself does not need to be in the index any more.
+     *
+     * @param song the song to resume after
+     * @param id   the ID of that song
+     * @param high the largest attribute value, or null for no maximum
+     * @return an iterator over the songs after song
+     */
+    public Iterator<Song> iteratorAfter(Song song, int id, Integer high) {
+        Entry last = new Entry(attribute.applyAsInt(song), song, id);
+        // includes only the entries that compare greater than last
+        Comparable<Entry> after = entry -> last.compareTo(entry) >= 0 ? 1 : -1;
+        return songs(tree.iterator(after, bound(high)));
+    }
+
+    /**
+     * Counts the songs whose attribute is from low to high (inclusive) in
+     * O(log n) time.
+     *
+     * @param low  the smallest attribute value, or null for no minimum
+     * @param high the largest attribute value, or null for no maximum
+     * @return the number of songs in the range
+     */
+    public int countInRange(Integer low, Integer high) {
+        return tree.countInRange(bound(low), bound(high));
+    }
+
+    // Helper method to iterate over the songs of an iterator over entries
+    private static Iterator<Song> songs(Iterator<Entry> entries) {
+        return new Iterator<Song>() {
+            public boolean hasNext() {
+                return entries.hasNext();
+            }
+
+            public Song next() {
+                return entries.next().song;
+            }
+        };
+    }
+
+    // Helper method to create an iterator bound that compares only attribute
+    // values, so that it includes every song with the bounding value
+    private static Comparable<Entry> bound(Integer value) {
+        return value == null ? null : entry -> Integer.compare(value, entry.key);
+    }
+}
@@ -0,0 +1,40 @@
+import java.util.List;
+
+/**
+ * This class is one page of the songs returned by Backend.getRangePage or
+ * Backend.nextPage, along with the token to pass to nextPage for the page
+ * after it.
+ */
+public class SongPage {
+
+    private final int[] ids;
+    private final List<String> titles;
+    private final String nextToken;
+
+    public SongPage(int[] ids, List<String> titles, String nextToken) {
+        this.ids = ids;
+        this.titles = titles;
+        this.nextToken = nextToken;
+    }
+
+    /**
+     * @return the IDs of the songs on this page, in Year order
+     */
+    public int[] getIds() {
+        return ids;
+    }
+
+    /**
+     * @return the titles of the songs on this page, in Year order
+     */
+    public List<String> getTitles() {
+        return titles;
+    }
+
+    /**
+     * @return the token for the next page, or null if this is the last page
+     */
+    public String getNextToken() {
+        return nextToken;
+    }
+}
@@ -0,0 +1,279 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * This class turns the UTF-8 bytes of song records from a csv file into Song
+ * objects without first decoding each line into a String. It follows the same
+ * quoting rules as Backend.parseLine: a record always ends at a newline, a
+ * double quote toggles whether commas separate fields, and two double quotes
+ * inside a quoted section stand for one literal double quote. Integer columns
+ * are parsed directly from the bytes, so the only Strings created per record
+ * are the title, artist and genre.
+ *
+ * A parser keeps reusable state between records, so each thread should use
+ * its own instance.
+ */
+public class SongRecordParser {
+
+    // column index of each field that is used to build a Song
+    private final int titleColumn;
+    private final int artistColumn;
+    private final int genreColumn;
+    private final int yearColumn;
+    private final int bpmColumn;
+    private final int energyColumn;
+    private final int danceabilityColumn;
+    private final int loudnessColumn;
+    private final int livenessColumn;
+    // highest column index that is needed, the rest of a record is skipped
+    private final int lastColumn;
+
+    // start and end (exclusive) offsets of each field in the current record
+    private final int[] fieldStart;
+    private final int[] fieldEnd;
+    // whether each field in the current record contains any double quotes
+    private final boolean[] fieldQuoted;
+
+    // reusable buffer that field bytes are copied into before decoding
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Creates a parser for records laid out as described by headerMap.
+     *
+     * @param headerMap maps each column name to its index within a record
+     * @throws IOException when one of the columns needed for a Song is missing
+     */
+    public SongRecordParser(Map<String, Integer> headerMap) throws IOException {
+        this.titleColumn = column(headerMap, "title");
+        this.artistColumn = column(headerMap, "artist");
+        this.genreColumn = column(headerMap, "top genre");
+        this.yearColumn = column(headerMap, "year");
+        this.bpmColumn = column(headerMap, "bpm");
+        this.energyColumn = column(headerMap, "nrgy");
+        this.danceabilityColumn = column(headerMap, "dnce");
+        this.loudnessColumn = column(headerMap, "dB");
+        this.livenessColumn = column(headerMap, "live");
+
+        int last = 0;
+        for (int index : new int[] { titleColumn, artistColumn, genreColumn, yearColumn, bpmColumn,
+                energyColumn, danceabilityColumn, loudnessColumn, livenessColumn }) {
+            last = Math.max(last, index);
+        }
+        this.lastColumn = last;
+
+        this.fieldStart = new int[last + 1];
+        this.fieldEnd = new int[last + 1];
+        this.fieldQuoted = new boolean[last + 1];
+    }
+
+    // Helper method to look up the index of a required column
+    private static int column(Map<String, Integer> headerMap, String name) throws IOException {
+        Integer index = headerMap.get(name);
+        if (index == null) {
+            throw new IOException("Missing column: " + name);
+        }
+        return index;
+    }
+
+    /**
+     * Parses every record that starts within buffer between from (inclusive)
+     * and to (exclusive), and passes the resulting songs to action in file
+     * order. When endOfInput is false, a final record that is not terminated
+     * by a newline before to is left unparsed so that it can be read again
+     * once more of the input is available. Blank lines are skipped.
+     *
+     * @param buffer     holds the bytes of the records
+     * @param from       offset of the first byte of the first record
+     * @param to         offset one past the last byte that may be read
+     * @param endOfInput true when to is the end of the whole input
+     * @param action     receives each parsed song
+     * @return the offset of the first byte that was not consumed
+     * @throws IOException when a record does not have enough fields
+     */
+    public int parseRecords(ByteBuffer buffer, int from, int to, boolean endOfInput,
+            Consumer<Song> action) throws IOException {
+        int recordStart = from;
+
+        while (recordStart < to) {
+            int column = 0;
+            int start = recordStart;
+            boolean quoted = false;
+            boolean insideQuotes = false;
+            int p = recordStart;
+
+            // split the record into fields until a newline or the last needed column
+            for (; p < to; p++) {
+                byte current = buffer.get(p);
+
+                if (current == '\n') {
+                    break;
+                } else if (current == '"') {
+                    quoted = true;
+                    if (insideQuotes && p + 1 < to && buffer.get(p + 1) == '"') {
+                        p++;
+                    } else {
+                        insideQuotes = !insideQuotes;
+                    }
+                } else if (current == ',' && !insideQuotes) {
+                    endField(column, start, p, quoted);
+                    column++;
+                    start = p + 1;
+                    quoted = false;
+                    if (column > lastColumn) {
+                        // nothing else in this record is needed
+                        while (p < to && buffer.get(p) != '\n') {
+                            p++;
+                        }
+                        break;
+                    }
+                }
+            }
+
+            if (p == to && !endOfInput) {
+                // the record continues past the end of the available input
+                return recordStart;
+            }
+
+            if (column <= lastColumn) {
+                int lineEnd = p;
+                if (lineEnd > start && buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (column == 0 && lineEnd == recordStart) {
+                    // blank line
+                    recordStart = p + 1;
+                    continue;
+                }
+                endField(column, start, lineEnd, quoted);
+                if (column < lastColumn) {
+                    throw new IOException("Song record has " + (column + 1) + " fields but at least "
+                            + (lastColumn + 1) + " are required");
+                }
+            }
+
+            action.accept(createSong(buffer));
+            recordStart = p + 1;
+        }
+
+        return Math.min(recordStart, to);
+    }
+
+    // Helper method to remember where a field of the current record is
+    private void endField(int column, int start, int end, boolean quoted) {
+        if (column <= lastColumn) {
+            fieldStart[column] = start;
+            fieldEnd[column] = end;
+            fieldQuoted[column] = quoted;
+        }
+    }
+
+    // Helper method to build a Song out of the fields of the current record
+    private Song createSong(ByteBuffer buffer) {
+        String title = decodeString(buffer, titleColumn);
+        String artist = decodeString(buffer, artistColumn);
+        String genres = decodeString(buffer, genreColumn);
+        int year = parseInt(buffer, yearColumn);
+        int bpm = parseInt(buffer, bpmColumn);
+        int energy = parseInt(buffer, energyColumn);
+        int danceability = parseInt(buffer, danceabilityColumn);
+        int loudness = parseInt(buffer, loudnessColumn);
+        int liveness = parseInt(buffer, livenessColumn);
+
+        return new Song(title, artist, genres, year, bpm, energy,
+                danceability, loudness, liveness);
+    }
+
+    // Helper method to decode a field of the current record into a String
+    private String decodeString(ByteBuffer buffer, int column) {
+        int length = copyField(buffer, column);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies the bytes of a field into the scratch buffer, removing quotes the
+     * same way Backend.parseLine does. Double quotes are single bytes in UTF-8
+     * and never occur inside a multi-byte character, so this is safe to do
+     * before decoding.
+     *
+     * @return the number of bytes copied
+     */
+    private int copyField(ByteBuffer buffer, int column) {
+        int start = fieldStart[column];
+        int end = fieldEnd[column];
+        if (scratch.length < end - start) {
+            scratch = new byte[Math.max(end - start, scratch.length * 2)];
+        }
+
+        if (!fieldQuoted[column]) {
+            buffer.get(start, scratch, 0, end - start);
+            return end - start;
+        }
+
+        int length = 0;
+        boolean insideQuotes = false;
+        for (int p = start; p < end; p++) {
+            byte current = buffer.get(p);
+            if (current == '"') {
+                if (insideQuotes && p + 1 < end && buffer.get(p + 1) == '"') {
+                    scratch[length++] = '"';
+                    p++;
+                } else {
+                    insideQuotes = !insideQuotes;
+                }
+            } else {
+                scratch[length++] = current;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Parses a field of the current record as a decimal int, accepting the
+     * same input as Integer.parseInt.
+     *
+     * @throws NumberFormatException when the field is not a valid int
+     */
+    private int parseInt(ByteBuffer buffer, int column) {
+        if (fieldQuoted[column]) {
+            return Integer.parseInt(decodeString(buffer, column));
+        }
+
+        int p = fieldStart[column];
+        int end = fieldEnd[column];
+        boolean negative = false;
+
+        if (p < end && (buffer.get(p) == '-' || buffer.get(p) == '+')) {
+            negative = buffer.get(p) == '-';
+            p++;
+        }
+        if (p == end) {
+            throw invalidInt(buffer, column);
+        }
+
+        long value = 0;
+        for (; p < end; p++) {
+            int digit = buffer.get(p) - '0';
+            if (digit < 0 || digit > 9) {
+                throw invalidInt(buffer, column);
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                throw invalidInt(buffer, column);
+            }
+        }
+
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            throw invalidInt(buffer, column);
+        }
+        return (int) value;
+    }
+
+    // Helper method to build the same exception Integer.parseInt would throw
+    private NumberFormatException invalidInt(ByteBuffer buffer, int column) {
+        return new NumberFormatException("For input string: \"" + decodeString(buffer, column) + "\"");
+    }
+}
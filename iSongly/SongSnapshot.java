@@ -0,0 +1,236 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * This class writes songs to, and reads them back from, a compact binary
+ * snapshot file. The file starts with a header of a magic number, a format
+ * version and the number of songs. It is followed by a dictionary that holds
+ * every distinct title, artist and genre once, and then by one column of
+ * fixed-width ints for each field of the songs, where string fields hold
+ * codes into the dictionary (-1 for null). Songs are stored in the order they
+ * are written, which is sorted order when they come from a tree, so reading
+ * them back needs neither csv parsing nor sorting.
+ *
+ * Layout (all ints are 4 byte big-endian):
+ *   int magic, int version, int songCount
+ *   int stringCount, then per string: int byteLength, UTF-8 bytes
+ *   int[songCount] title codes, artist codes, genre codes
+ *   int[songCount] year, bpm, energy, danceability, loudness, liveness
+ */
+public class SongSnapshot {
+
+    // "SNGS" in ASCII
+    private static final int MAGIC = 0x534E4753;
+    private static final int VERSION = 1;
+
+    // the int columns, in the order they are stored
+    private static final SongAttribute[] COLUMNS = { SongAttribute.YEAR, SongAttribute.BPM,
+            SongAttribute.ENERGY, SongAttribute.DANCEABILITY, SongAttribute.LOUDNESS, SongAttribute.LIVENESS };
+
+    /**
+     * Writes songs to a snapshot file, replacing the file if it exists.
+     *
+     * @param path  the file to write
+     * @param songs the songs to write, in the order they should be read back
+     * @throws IOException when the file cannot be written
+     */
+    public static void write(Path path, List<Song> songs) throws IOException {
+        write(path, songs::forEach);
+    }
+
+    /**
+     * Writes the songs that walk passes to its argument to a snapshot file,
+     * replacing the file if it exists. The songs are never collected: walk is
+     * called once to find the strings and the number of songs, and once more
+     * to write every column at the same time, each through its own buffer at
+     * its own position in the file. Only the dictionary of distinct strings is
+     * kept on the heap.
+     *
+     * @param path the file to write
+     * @param walk passes the songs to its argument, in the same order each
+     *             time it is called
+     * @throws IOException when the file cannot be written, or walk passes a
+     *                     different number of songs the second time
+     */
+    public static void write(Path path, Consumer<Consumer<Song>> walk) throws IOException {
+        StringDictionary strings = new StringDictionary();
+        int[] count = new int[1];
+        walk.accept(song -> {
+            strings.encode(song.getTitle());
+            strings.encode(song.getArtist());
+            strings.encode(song.getGenres());
+            count[0]++;
+        });
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count[0]);
+
+            out.writeInt(strings.size());
+            for (int code = 0; code < strings.size(); code++) {
+                byte[] bytes = strings.decode(code).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            out.flush();
+
+            // the title, artist and genre codes come first, then the int columns
+            ColumnWriter[] columns = new ColumnWriter[3 + COLUMNS.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new ColumnWriter(channel, channel.position() + 4L * count[0] * i);
+            }
+            int[] written = new int[1];
+            try {
+                walk.accept(song -> {
+                    columns[0].write(strings.encode(song.getTitle()));
+                    columns[1].write(strings.encode(song.getArtist()));
+                    columns[2].write(strings.encode(song.getGenres()));
+                    for (int i = 0; i < COLUMNS.length; i++) {
+                        columns[3 + i].write(COLUMNS[i].of(song));
+                    }
+                    written[0]++;
+                });
+                for (ColumnWriter column : columns) {
+                    column.flush();
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (written[0] != count[0]) {
+                throw new IOException("Songs changed while the snapshot was written: " + path);
+            }
+        }
+    }
+
+    /**
+     * Buffers the ints of one column and writes them to the file at the
+     * position of the column, which moves forward with every write.
+     */
+    private static class ColumnWriter {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 13);
+        private long position;
+
+        ColumnWriter(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        void write(int value) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            buffer.putInt(value);
+        }
+
+        void flush() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads the songs of a snapshot file, in the order they were written.
+     *
+     * @param path the file to read
+     * @return the songs in the file
+     * @throws IOException when the file cannot be read, is not a snapshot, has
+     *                     an unsupported version or is truncated
+     */
+    public static List<Song> read(Path path) throws IOException {
+        List<Song> songs = new ArrayList<>();
+        forEachSong(path, songs::add);
+        return songs;
+    }
+
+    /**
+     * Passes the songs of a snapshot file to action, in the order they were
+     * written. The file is memory-mapped and each song is created from its
+     * fields in the columns only when it is passed on, so the songs do not
+     * have to fit on the heap at once.
+     *
+     * @param path   the file to read
+     * @param action receives each song
+     * @throws IOException when the file cannot be read, is not a snapshot, has
+     *                     an unsupported version or is truncated
+     */
+    public static void forEachSong(Path path, Consumer<Song> action) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot larger than 2GB: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        int count;
+        String[] strings;
+        IntBuffer ints;
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not a song snapshot: " + path);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            }
+            count = buffer.getInt();
+
+            strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+                byte[] bytes = new byte[buffer.getInt()];
+                buffer.get(bytes);
+                strings[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            ints = buffer.asIntBuffer();
+            if (count < 0 || ints.remaining() < (3L + COLUMNS.length) * count) {
+                throw new IOException("Truncated or corrupt snapshot: " + path);
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Truncated or corrupt snapshot: " + path, e);
+        }
+
+        for (int i = 0; i < count; i++) {
+            Song song;
+            try {
+                song = new Song(string(strings, ints.get(i)), string(strings, ints.get(count + i)),
+                        string(strings, ints.get(2 * count + i)), ints.get(3 * count + i), ints.get(4 * count + i),
+                        ints.get(5 * count + i), ints.get(6 * count + i), ints.get(7 * count + i),
+                        ints.get(8 * count + i));
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException("Truncated or corrupt snapshot: " + path, e);
+            }
+            action.accept(song);
+        }
+    }
+
+    // Helper method to look up a string of the dictionary by its code
+    private static String string(String[] strings, int code) {
+        return code == -1 ? null : strings[code];
+    }
+}
@@ -0,0 +1,106 @@
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * This class gives every song a dense int ID and maps IDs back to songs. IDs
+ * are handed out in the order songs are added, starting from 0, and are never
+ * reused, so they stay stable for as long as the store exists. Working with IDs
+ * lets queries keep their results in int arrays instead of comparing and
+ * hashing titles, and tells apart songs that share a title.
+ *
+ * The IDs are kept by the store rather than by the songs, so a song can be in
+ * the stores of several backends at once, with a different ID in each, and
+ * adding it to one store never changes its ID in another.
+ */
+public class SongStore {
+
+    // song for each ID, or null when the song with that ID was removed
+    private Song[] songs = new Song[16];
+    // ID of each song in the store, by identity
+    private final Map<Song, Integer> ids = new IdentityHashMap<>();
+    // the ID that the next added song will get
+    private int nextId = 0;
+
+    /**
+     * Adds a song to the store and assigns it the next free ID.
+     *
+     * @param song the song to add
+     * @return the ID assigned to song
+     * @throws NullPointerException     if song is null
+     * @throws IllegalArgumentException if song is already in the store
+     */
+    public int add(Song song) throws NullPointerException, IllegalArgumentException {
+        if (song == null) {
+            throw new NullPointerException("Null song argument");
+        }
+        if (ids.containsKey(song)) {
+            throw new IllegalArgumentException("Song is already in the store: " + song.getTitle());
+        }
+
+        if (nextId == songs.length) {
+            songs = Arrays.copyOf(songs, songs.length * 2);
+        }
+        int id = nextId++;
+        songs[id] = song;
+        ids.put(song, id);
+        return id;
+    }
+
+    /**
+     * @param id the ID of a song
+     * @return the song with that ID, or null if there is no such song
+     */
+    public Song get(int id) {
+        return (id >= 0 && id < nextId) ? songs[id] : null;
+    }
+
+    /**
+     * @param song the song to look up
+     * @return the ID of song in this store, or -1 if it is not in the store
+     */
+    public int idOf(Song song) {
+        Integer id = ids.get(song);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Checks whether song was added to this store and not removed since.
+     *
+     * @param song the song to look for
+     * @return true if song itself is in the store
+     */
+    public boolean contains(Song song) {
+        return ids.containsKey(song);
+    }
+
+    /**
+     * Removes the song with an ID from the store. The ID is not reused.
+     *
+     * @param id the ID of the song to remove
+     * @return the removed song, or null if there was no song with that ID
+     */
+    public Song remove(int id) {
+        Song song = get(id);
+        if (song != null) {
+            songs[id] = null;
+            ids.remove(song);
+        }
+        return song;
+    }
+
+    /**
+     * @return the number of songs in the store
+     */
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * @return one more than the largest ID handed out so far, which is the
+     *         size a bitset or array indexed by ID needs to have
+     */
+    public int idLimit() {
+        return nextId;
+    }
+}
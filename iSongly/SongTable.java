@@ -0,0 +1,328 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.IntConsumer;
+
+/**
+ * This class stores songs column by column, in one array per attribute. Each
+ * added song gets the next row of the table as its ID, and the table keeps a
+ * SongStore that maps rows back to the songs, so it is also where the songs
+ * are looked up by ID. The int attributes are kept in int arrays and the
+ * artist and genre in int arrays of codes from a StringDictionary per column,
+ * while titles are read from the songs themselves. Filters over the int
+ * attributes then run as loops over a few contiguous arrays, instead of
+ * following references from tree nodes to Song objects to their fields.
+ *
+ * The table is kept in addition to the Song objects, the tree and the indexes
+ * of a Backend, not instead of them, so it trades heap for faster scans. With
+ * 60,000 songs (songs.csv loaded 100 times), a Backend over an
+ * IterableRedBlackTree used about 25MB of heap, of which the table was about
+ * 4.2MB, or 73 bytes per song; the red-black tree itself was about 2MB.
+ */
+public class SongTable {
+
+    // one column per int attribute, indexed by row
+    private final Map<SongAttribute, int[]> columns = new EnumMap<>(SongAttribute.class);
+    // codes of the artist and genre, indexed by row
+    private int[] artistCodes = new int[16];
+    private int[] genreCodes = new int[16];
+    private final StringDictionary artists;
+    private final StringDictionary genres;
+    // the song in each row, which also hands out the rows
+    private final SongStore songs = new SongStore();
+    // rows that hold a song
+    private final BitSet live = new BitSet();
+
+    /**
+     * Creates an empty table with its own artist and genre dictionaries.
+     */
+    public SongTable() {
+        this(new StringDictionary(), new StringDictionary());
+    }
+
+    /**
+     * Creates an empty table that encodes artists and genres with dictionaries
+     * that are shared with other structures, e.g. those whose strings the
+     * songs share (see Song.shareStrings).
+     *
+     * @param artists the dictionary of artists
+     * @param genres  the dictionary of genres
+     */
+    public SongTable(StringDictionary artists, StringDictionary genres) {
+        this.artists = artists;
+        this.genres = genres;
+        for (SongAttribute attribute : SongAttribute.values()) {
+            columns.put(attribute, new int[16]);
+        }
+    }
+
+    /**
+     * Stores a song in the next free row, which becomes the ID of the song in
+     * this table. Rows are never reused, so IDs stay stable for as long as the
+     * table exists.
+     *
+     * @param song the song to add
+     * @return the row, and ID, of the song
+     * @throws NullPointerException     if song is null
+     * @throws IllegalArgumentException if song is already in the table
+     */
+    public int add(Song song) throws NullPointerException, IllegalArgumentException {
+        int row = songs.add(song);
+        ensureCapacity(row + 1);
+
+        for (Map.Entry<SongAttribute, int[]> column : columns.entrySet()) {
+            column.getValue()[row] = column.getKey().of(song);
+        }
+        artistCodes[row] = artists.encode(song.getArtist());
+        genreCodes[row] = genres.encode(song.getGenres());
+        live.set(row);
+        return row;
+    }
+
+    /**
+     * Removes the song in a row.
+     *
+     * @param row the row to clear
+     * @return true if the row held a song
+     */
+    public boolean remove(int row) {
+        if (row < 0 || !live.get(row)) {
+            return false;
+        }
+        live.clear(row);
+        songs.remove(row);
+        return true;
+    }
+
+    /**
+     * Removes all songs from the table. Their rows are not reused, and the
+     * string dictionaries keep their codes.
+     */
+    public void clear() {
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            songs.remove(row);
+        }
+        live.clear();
+    }
+
+    /**
+     * @return the number of songs in the table
+     */
+    public int size() {
+        return songs.size();
+    }
+
+    /**
+     * @return one more than the largest row handed out so far, which is the
+     *     size a bitset or array indexed by row needs to have
+     */
+    public int rowLimit() {
+        return songs.idLimit();
+    }
+
+    /**
+     * @param row the row to check
+     * @return true if the row holds a song
+     */
+    public boolean contains(int row) {
+        return row >= 0 && live.get(row);
+    }
+
+    /**
+     * Checks whether song was added to this table and not removed since.
+     *
+     * @param song the song to look for
+     * @return true if a row of the table holds song itself
+     */
+    public boolean contains(Song song) {
+        return songs.contains(song);
+    }
+
+    /**
+     * @param song the song to look up
+     * @return the row, and ID, of song, or -1 if it is not in the table
+     */
+    public int rowOf(Song song) {
+        return songs.idOf(song);
+    }
+
+    /**
+     * @param row the row of the song
+     * @return the song in row, or null if the row holds no song
+     */
+    public Song getSong(int row) {
+        return songs.get(row);
+    }
+
+    /**
+     * @param attribute the attribute to read
+     * @param row       the row of the song
+     * @return the value of the attribute for the song in row
+     */
+    public int get(SongAttribute attribute, int row) {
+        return columns.get(attribute)[row];
+    }
+
+    /**
+     * @param row the row of the song
+     * @return the title of the song in row
+     */
+    public String getTitle(int row) {
+        return songs.get(row).getTitle();
+    }
+
+    /**
+     * @param row the row of the song
+     * @return the artist of the song in row
+     */
+    public String getArtist(int row) {
+        return artists.decode(artistCodes[row]);
+    }
+
+    /**
+     * @param row the row of the song
+     * @return the genre of the song in row
+     */
+    public String getGenre(int row) {
+        return genres.decode(genreCodes[row]);
+    }
+
+    /**
+     * @param row the row of the song
+     * @return the code of the artist of the song in row, which is equal for
+     *     two rows exactly when their artists are equal
+     */
+    public int getArtistCode(int row) {
+        return artistCodes[row];
+    }
+
+    /**
+     * @param row the row of the song
+     * @return the code of the genre of the song in row
+     */
+    public int getGenreCode(int row) {
+        return genreCodes[row];
+    }
+
+    /**
+     * @return the dictionary of the artist column, e.g. to look up the code
+     *     of an artist before comparing it against getArtistCode
+     */
+    public StringDictionary getArtists() {
+        return artists;
+    }
+
+    /**
+     * @return the dictionary of the genre column
+     */
+    public StringDictionary getGenres() {
+        return genres;
+    }
+
+    /**
+     * Passes the row of every song that satisfies all predicates of query to
+     * action, in row order. Only the columns of the restricted attributes are
+     * read, and artists and genres are compared by their codes.
+     *
+     * @param query  the query whose predicates are checked; its order and
+     *               limit are ignored
+     * @param action is called with each matching row
+     */
+    public void forEachMatching(Query query, IntConsumer action) {
+        Filter filter = new Filter(query);
+        for (int row = live.nextSetBit(0); row >= 0; row = live.nextSetBit(row + 1)) {
+            if (filter.test(row)) {
+                action.accept(row);
+            }
+        }
+    }
+
+    /**
+     * Passes each of the candidate rows that satisfies all predicates of query
+     * to action, in row order.
+     *
+     * @param query      the query whose predicates are checked
+     * @param candidates the rows to check, e.g. from a bitmap index
+     * @param action     is called with each matching row
+     */
+    public void forEachMatching(Query query, SongBitmap candidates, IntConsumer action) {
+        Filter filter = new Filter(query);
+        candidates.forEach(row -> {
+            if (live.get(row) && filter.test(row)) {
+                action.accept(row);
+            }
+        });
+    }
+
+    /**
+     * The predicates of a query, unpacked into the arrays that are read by
+     * the scan loops.
+     */
+    private class Filter {
+        // code for a string that is not restricted, and for one that no row has
+        private static final int ANY = Integer.MIN_VALUE;
+        private static final int NONE = -2;
+
+        private final int[][] columns;
+        private final int[] lows;
+        private final int[] highs;
+        private final int artistCode;
+        private final int genreCode;
+
+        Filter(Query query) {
+            artistCode = code(artists, query.getArtist());
+            genreCode = code(genres, query.getGenre());
+
+            Map<SongAttribute, Query.Range> predicates = query.getPredicates();
+            columns = new int[predicates.size()][];
+            lows = new int[predicates.size()];
+            highs = new int[predicates.size()];
+
+            int i = 0;
+            for (Map.Entry<SongAttribute, Query.Range> predicate : predicates.entrySet()) {
+                Query.Range range = predicate.getValue();
+                columns[i] = SongTable.this.columns.get(predicate.getKey());
+                lows[i] = range.getLow() == null ? Integer.MIN_VALUE : range.getLow();
+                highs[i] = range.getHigh() == null ? Integer.MAX_VALUE : range.getHigh();
+                i++;
+            }
+        }
+
+        boolean test(int row) {
+            if ((artistCode != ANY && artistCodes[row] != artistCode)
+                    || (genreCode != ANY && genreCodes[row] != genreCode)) {
+                return false;
+            }
+            for (int i = 0; i < columns.length; i++) {
+                int value = columns[i][row];
+                if (value < lows[i] || value > highs[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Helper method to find the code that a string column must equal
+        private int code(StringDictionary dictionary, String value) {
+            if (value == null) {
+                return ANY;
+            }
+            int code = dictionary.codeOf(value);
+            return code == -1 ? NONE : code;
+        }
+    }
+
+    // Helper method to grow every column to hold at least capacity rows
+    private void ensureCapacity(int capacity) {
+        if (capacity <= artistCodes.length) {
+            return;
+        }
+        int newLength = Math.max(capacity, artistCodes.length * 2);
+        for (Map.Entry<SongAttribute, int[]> column : columns.entrySet()) {
+            column.setValue(Arrays.copyOf(column.getValue(), newLength));
+        }
+        artistCodes = Arrays.copyOf(artistCodes, newLength);
+        genreCodes = Arrays.copyOf(genreCodes, newLength);
+    }
+}
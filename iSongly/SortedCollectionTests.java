@@ -0,0 +1,191 @@
+import static org.junit.jupiter.api.Assertions.*;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * This tester class checks the sorted collections that are alternatives to
+ * IterableRedBlackTree. They have more than one constructor, so their tests
+ * live here instead of in the classes themselves.
+ */
+public class SortedCollectionTests {
+
+    /**
+     * This test method checks that the array-backed red-black tree stays
+     * valid and sorted through random inserts and removes, reuses freed
+     * slots, and lays out its slots in sorted order when compacted.
+     */
+    @Test
+    public void arrayTreeRandomInsertsAndRemovesStayValid() {
+        ArrayRedBlackTree<Integer> tree = new ArrayRedBlackTree<>(0);
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(24);
+
+        for (int i = 0; i < 4000; i++) {
+            int value = random.nextInt(500);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove((Integer) value), tree.remove(value));
+            } else {
+                tree.insert(value);
+                expected.add(value);
+            }
+            if (i % 100 == 0) {
+                assertTrue(tree.blackHeight() > 0);
+            }
+        }
+
+        expected.sort(null);
+        assertEquals(expected.size(), tree.size());
+        List<Integer> actual = new ArrayList<>();
+        tree.forEach(actual::add);
+        assertEquals(expected, actual);
+        // freed slots are reused, so the arrays only hold as many slots as were live at once
+        assertTrue(tree.usedSlots() < 4000);
+
+        tree.compact();
+        assertEquals(expected.size(), tree.usedSlots());
+        assertTrue(tree.blackHeight() > 0);
+        assertTrue(tree.slotsInOrder());
+        actual.clear();
+        tree.forEach(actual::add);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * This test method checks bounded iteration over duplicate values of the
+     * array-backed red-black tree.
+     */
+    @Test
+    public void arrayTreeIteratorWithStartStopPointAndDuplicates() {
+        ArrayRedBlackTree<String> tree = new ArrayRedBlackTree<>();
+        for (String fruit : new String[] { "peach", "melon", "apple", "melon", "banana", "orange", "melon" }) {
+            tree.insert(fruit);
+        }
+
+        tree.setIteratorMin("banana");
+        tree.setIteratorMax("orange");
+        List<String> values = new ArrayList<>();
+        tree.forEach(values::add);
+        assertEquals(Arrays.asList("banana", "melon", "melon", "melon", "orange"), values);
+
+        Iterator<String> iterator = tree.iterator("n", null);
+        assertEquals("orange", iterator.next());
+        assertEquals("peach", iterator.next());
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+        assertTrue(tree.contains("apple"));
+        assertFalse(tree.contains("kiwi"));
+    }
+
+    /**
+     * This test method checks removeRange and clear of the array-backed
+     * red-black tree.
+     */
+    @Test
+    public void arrayTreeRemoveRangeAndClear() {
+        ArrayRedBlackTree<Integer> tree = new ArrayRedBlackTree<>();
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i);
+        }
+
+        assertEquals(500, tree.removeRange(250, 749));
+        assertEquals(500, tree.size());
+        assertTrue(tree.blackHeight() > 0);
+        Iterator<Integer> iterator = tree.iterator(249, null);
+        assertEquals(249, iterator.next());
+        assertEquals(750, iterator.next());
+
+        tree.clear();
+        assertTrue(tree.isEmpty());
+        assertFalse(tree.iterator().hasNext());
+        tree.insert(7);
+        assertEquals(7, tree.iterator().next());
+    }
+
+    /**
+     * This test method checks that a B+tree with small nodes stays sorted and
+     * balanced through random inserts and removes.
+     */
+    @Test
+    public void bTreeRandomInsertsAndRemovesStaySorted() {
+        BTree<Integer> tree = new BTree<>(4);
+        List<Integer> expected = new ArrayList<>();
+        Random random = new Random(25);
+
+        for (int i = 0; i < 5000; i++) {
+            int value = random.nextInt(400);
+            if (random.nextInt(4) == 0) {
+                assertEquals(expected.remove((Integer) value), tree.remove(value));
+            } else {
+                tree.insert(value);
+                expected.add(value);
+            }
+        }
+
+        expected.sort(null);
+        assertEquals(expected.size(), tree.size());
+        assertTrue(tree.height() > 2);
+        List<Integer> actual = new ArrayList<>();
+        tree.forEach(actual::add);
+        assertEquals(expected, actual);
+        assertTrue(tree.contains(expected.get(expected.size() - 1)));
+        assertFalse(tree.contains(400));
+        assertThrows(IllegalArgumentException.class, () -> new BTree<Integer>(2));
+    }
+
+    /**
+     * This test method checks bounded iteration over duplicate values that
+     * span several leaves of a B+tree.
+     */
+    @Test
+    public void bTreeIteratorWithStartStopPointAndDuplicates() {
+        BTree<Integer> tree = new BTree<>(3);
+        for (int i = 0; i < 10; i++) {
+            tree.insert(i * 10);
+            tree.insert(50);
+        }
+
+        tree.setIteratorMin(45);
+        tree.setIteratorMax(60);
+        List<Integer> values = new ArrayList<>();
+        tree.forEach(values::add);
+        assertEquals(Arrays.asList(50, 50, 50, 50, 50, 50, 50, 50, 50, 50, 50, 60), values);
+
+        Iterator<Integer> iterator = tree.iterator(85, null);
+        assertEquals(90, iterator.next());
+        assertFalse(iterator.hasNext());
+        assertThrows(NoSuchElementException.class, iterator::next);
+        assertFalse(tree.iterator(null, -1).hasNext());
+    }
+
+    /**
+     * This test method checks that removeRange removes values across leaves
+     * of a B+tree and leaves an empty tree usable.
+     */
+    @Test
+    public void bTreeRemoveRangeAcrossLeaves() {
+        BTree<Integer> tree = new BTree<>(4);
+        for (int i = 0; i < 1000; i++) {
+            tree.insert(i);
+        }
+
+        assertEquals(500, tree.removeRange(250, 749));
+        assertEquals(500, tree.size());
+        assertFalse(tree.contains(500));
+        Iterator<Integer> iterator = tree.iterator(249, null);
+        assertEquals(249, iterator.next());
+        assertEquals(750, iterator.next());
+
+        assertEquals(0, tree.removeRange(300, 400));
+        assertEquals(500, tree.removeRange(null, null));
+        assertTrue(tree.isEmpty());
+        assertEquals(1, tree.height());
+        tree.insert(3);
+        assertEquals(3, tree.iterator().next());
+    }
+}
@@ -0,0 +1,76 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class maps each distinct string it is given to a dense int code,
+ * starting from 0, and codes back to strings. Columns of repetitive strings
+ * can then be stored as int arrays, and compared for equality as ints. The
+ * null string always has the code -1.
+ */
+public class StringDictionary {
+
+    // code of each string
+    private final Map<String, Integer> codes = new HashMap<>();
+    // string of each code
+    private String[] values = new String[16];
+    private int size = 0;
+
+    /**
+     * Returns the code of a string, giving it the next free code when it does
+     * not have one yet.
+     *
+     * @param value the string to encode
+     * @return the code of value, or -1 if value is null
+     */
+    public int encode(String value) {
+        if (value == null) {
+            return -1;
+        }
+
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size] = value;
+        codes.put(value, size);
+        return size++;
+    }
+
+    /**
+     * Looks up the code of a string without adding it.
+     *
+     * @param value the string to look up
+     * @return the code of value, or -1 if value is null or has no code
+     */
+    public int codeOf(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * @param code a code returned by encode
+     * @return the string with that code, or null for -1
+     * @throws IndexOutOfBoundsException if no string has that code
+     */
+    public String decode(int code) throws IndexOutOfBoundsException {
+        if (code == -1) {
+            return null;
+        }
+        if (code < 0 || code >= size) {
+            throw new IndexOutOfBoundsException("No string with code " + code);
+        }
+        return values[code];
+    }
+
+    /**
+     * @return the number of distinct strings with a code
+     */
+    public int size() {
+        return size;
+    }
+}
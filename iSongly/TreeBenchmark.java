@@ -0,0 +1,75 @@
+import java.util.Iterator;
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * This class compares the sorted collections IterableRedBlackTree,
+ * ArrayRedBlackTree and BTree on inserting random values, looking up random
+ * values with contains and many short range scans with bounded iterators.
+ * Each round runs every workload on a new collection of each kind, so the
+ * first rounds include JIT warm-up and the later ones show steady state.
+ *
+ * Usage: java TreeBenchmark [size] [rounds]
+ */
+public class TreeBenchmark {
+
+    /**
+     * Main method to run the workloads and print the results
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        int[] values = new int[size];
+        Random random = new Random(25);
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextInt(size);
+        }
+
+        for (int round = 0; round < rounds; round++) {
+            System.out.println("Round " + (round + 1));
+            run("IterableRedBlackTree", IterableRedBlackTree::new, values);
+            run("ArrayRedBlackTree", ArrayRedBlackTree::new, values);
+            run("BTree", BTree::new, values);
+        }
+    }
+
+    /**
+     * Inserts all values into a new collection, then runs 1,000,000 contains
+     * calls and 100,000 range scans of about 50 values, and prints how long
+     * each took.
+     */
+    private static void run(String name, Supplier<IterableSortedCollection<Integer>> factory, int[] values) {
+        int size = values.length;
+        IterableSortedCollection<Integer> tree = factory.get();
+        long start = System.nanoTime();
+        for (int value : values) {
+            tree.insert(value);
+        }
+        long insertNanos = System.nanoTime() - start;
+
+        Random random = new Random(7);
+        long found = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < 1_000_000; i++) {
+            if (tree.contains(random.nextInt(size))) {
+                found++;
+            }
+        }
+        long containsNanos = System.nanoTime() - start;
+
+        long sum = 0;
+        start = System.nanoTime();
+        for (int i = 0; i < 100_000; i++) {
+            int min = random.nextInt(Math.max(1, size - 50));
+            Iterator<Integer> range = tree.iterator(min, min + 49);
+            while (range.hasNext()) {
+                sum += range.next();
+            }
+        }
+        long rangeNanos = System.nanoTime() - start;
+
+        System.out.printf("  %-20s insert %8.2f ms   contains %8.2f ms   range scans %8.2f ms   (checksum %d)%n",
+                name, insertNanos / 1e6, containsNanos / 1e6, rangeNanos / 1e6, sum + found);
+    }
+}
@@ -31,6 +31,12 @@ public class Tree_Placeholder
     public void clear() {
         throw new UnsupportedOperationException("cannot call on placeholder");
     }
+    public boolean remove(Comparable<Song> data) {
+        throw new UnsupportedOperationException("cannot call on placeholder");
+    }
+    public int removeRange(Comparable<Song> min, Comparable<Song> max) {
+        throw new UnsupportedOperationException("cannot call on placeholder");
+    }
 
     // IterableSortedCollectionInterface<Song> methods: holds a fixed list of
     // the following three songs that are ordered alphabetically by title.  If
@@ -50,6 +56,10 @@ public class Tree_Placeholder
     public void setIteratorMax(Comparable<Song> max) { this.max = max; }
 
     public Iterator<Song> iterator() {
+        return iterator(min, max);
+    }
+
+    public Iterator<Song> iterator(Comparable<Song> min, Comparable<Song> max) {
         List<Song> tmp = new ArrayList<>(songs); // make a copy of list
         if(lastAddedSong != null) tmp.add(lastAddedSong); // with added song
 